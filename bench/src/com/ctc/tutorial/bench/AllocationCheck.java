@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.bench;
+
+import java.lang.management.ManagementFactory;
+
+import com.ctc.tutorial.core.BoundsModel;
+import com.ctc.tutorial.core.DefaultBoundsModel;
+import com.ctc.tutorial.core.GestureRecognizer;
+import com.ctc.tutorial.core.LayoutEngine;
+import com.ctc.tutorial.core.ManualClock;
+import com.ctc.tutorial.core.SampleBoundsModel;
+
+/**
+ * Fails (exit status 1) if a steady state animation frame or touch
+ * move allocates.
+ *
+ * Each scenario is run for a short and a long number of frames and
+ * the difference in allocated bytes is divided by the extra frames,
+ * so one-off costs (JIT, the allocation counter itself) cancel out.
+ * The budget is zero bytes, not zero rounded to the nearest byte per
+ * frame: the 20 000 extra frames must allocate nothing at all.
+ *
+ * Runs in the test phase of the bench module, so "mvn -B test" in
+ * bench/ fails when a frame starts allocating.
+ *
+ * Only the android independent core is covered here: LayoutEngine,
+ * the models and GestureRecognizer.  DynamicLayoutViewGroup's layout
+ * and touch handling are checked the same way by ViewAllocationTest
+ * under Robolectric, drawing by neither, use the allocation tracker
+ * on a device for that.
+ */
+public final class AllocationCheck {
+
+	private static final int SHORT_RUN = 2000;
+	private static final int LONG_RUN = 22000;
+
+	// the long run may not allocate a single byte more than the
+	// short one
+	private static final long BYTES_BUDGET = 0;
+
+	// a stray allocation outside our code (a JIT or GC thread
+	// charging this one) gets a retry, an allocation made every
+	// frame fails every attempt
+	private static final int ATTEMPTS = 3;
+
+	static volatile long sink;
+
+	interface Scenario {
+		void frames(int n);
+	}
+
+	public static void main(String[] args) {
+		if (allocatedBytes() < 0) {
+			System.err.println("this JVM does not count allocated bytes");
+			System.exit(2);
+		}
+		boolean ok = true;
+		ok &= check("selection animation, default model", selectionAnimation(new DefaultBoundsModel(), 100));
+		ok &= check("selection animation, sample model", selectionAnimation(new SampleBoundsModel(), 9));
+		ok &= check("drag and fling", dragAndFling());
+		System.exit(ok ? 0 : 1);
+	}
+
+	/**
+	 * keep animating between selections, one step per frame
+	 */
+	static Scenario selectionAnimation(final BoundsModel model, final int count) {
+		final LayoutEngine engine = new LayoutEngine(model);
+		engine.sizeChanged(720, 1280, 0, 0);
+		engine.setCount(count);
+		engine.settle();
+		final ManualClock clock = new ManualClock(0);
+		return new Scenario() {
+			public void frames(int n) {
+				for (int i = 0; i < n; i++) {
+					clock.advance(16);
+					if (!engine.step(clock.uptimeMillis())) {
+						int next = (engine.getSelected() + 1) % count;
+						engine.moveTo(next);
+						engine.step(clock.uptimeMillis());
+					}
+					sink += engine.getLeft(0);
+				}
+			}
+		};
+	}
+
+	/**
+	 * a drag across the screen released as a fling, with the
+	 * resulting animation stepped on the same frames
+	 */
+	static Scenario dragAndFling() {
+		final LayoutEngine engine = new LayoutEngine(new DefaultBoundsModel());
+		engine.sizeChanged(720, 1280, 0, 0);
+		engine.setCount(9);
+		engine.settle();
+		final GestureRecognizer gestures = new GestureRecognizer(16, 50);
+		final ManualClock clock = new ManualClock(0);
+		return new Scenario() {
+			int frame = 0;
+
+			public void frames(int n) {
+				for (int i = 0; i < n; i++) {
+					clock.advance(16);
+					engine.step(clock.uptimeMillis());
+					int phase = frame++ % 40;
+					if (phase == 0) {
+						gestures.down(clock.uptimeMillis(), 600, 640);
+					} else if (phase < 10) {
+						// two batched samples per frame like a fast panel
+						long t = clock.uptimeMillis();
+						gestures.sample(t - 8, 620 - phase * 40, 640);
+						gestures.move(t, 600 - phase * 40, 640);
+						sink += gestures.getPredictedX(t + 16);
+					} else if (phase == 10) {
+						int sel = engine.getSelected();
+						if (gestures.up(-3000, 0) == GestureRecognizer.FLING_X) {
+							engine.moveTo(sel < 8 ? sel + 1 : 0);
+						}
+					}
+					sink += engine.getLeft(0);
+				}
+			}
+		};
+	}
+
+	static boolean check(String name, Scenario scenario) {
+		// warm up so the JIT has settled
+		scenario.frames(LONG_RUN);
+
+		long extra = 0;
+		for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+			long a = allocatedBytes();
+			scenario.frames(SHORT_RUN);
+			long shortRun = allocatedBytes() - a;
+
+			a = allocatedBytes();
+			scenario.frames(LONG_RUN);
+			long longRun = allocatedBytes() - a;
+
+			extra = longRun - shortRun;
+			if (extra <= BYTES_BUDGET) {
+				break;
+			}
+		}
+		boolean ok = extra <= BYTES_BUDGET;
+		System.out.println(String.format("%-40s %8d B over %d frames  %s", name, Math.max(0, extra),
+				LONG_RUN - SHORT_RUN, ok ? "ok" : "OVER BUDGET"));
+		return ok;
+	}
+
+	/**
+	 * bytes allocated by this thread so far, -1 if the JVM does
+	 * not track it
+	 */
+	static long allocatedBytes() {
+		java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+		if (bean instanceof com.sun.management.ThreadMXBean) {
+			return ((com.sun.management.ThreadMXBean) bean)
+					.getThreadAllocatedBytes(Thread.currentThread().getId());
+		}
+		return -1;
+	}
+}
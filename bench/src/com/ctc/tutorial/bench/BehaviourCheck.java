@@ -0,0 +1,303 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ctc.tutorial.bench;
+
+import com.ctc.tutorial.core.Bounds;
+import com.ctc.tutorial.core.BoundsModel;
+import com.ctc.tutorial.core.FloatBounds;
+import com.ctc.tutorial.core.GestureRecognizer;
+import com.ctc.tutorial.core.LayoutEngine;
+import com.ctc.tutorial.core.TableBoundsModel;
+import com.ctc.tutorial.core.ZOrderModel;
+
+/**
+ * Fails (exit status 1) if the table model, the engine's z order or
+ * the gesture recognizer stop doing what they say they do.  Runs in the test phase of the
+ * bench module next to AllocationCheck.
+ *
+ * The XML side of the tables (TableLayoutModel's missing and
+ * repeated rows) needs the framework and is checked by
+ * TableLayoutModelTest under Robolectric.
+ */
+public final class BehaviourCheck {
+
+	private static final int WIDTH = 1000;
+	private static final int HEIGHT = 2000;
+
+	// three slots down a portrait screen, two across a landscape one
+	private static final float[] PORTRAIT = {
+			0.1f, 0.0f, 0.9f, 0.3f,
+			0.1f, 0.3f, 0.9f, 0.7f,
+			0.1f, 0.7f, 0.9f, 1.0f };
+	private static final float[] LANDSCAPE = {
+			0.0f, 0.1f, 0.5f, 0.9f,
+			0.5f, 0.1f, 1.0f, 0.9f };
+
+	private static int sFailures = 0;
+
+	public static void main(String[] args) {
+		check("table model, offset mapping", offsetMapping());
+		check("table model, explicit mapping", explicitMapping());
+		check("table model, landscape has fewer slots", fewerLandscapeSlots());
+		check("table model, bad tables", badTables());
+		check("engine, default draw order", defaultDrawOrder());
+		check("engine, z order model", zOrder());
+		check("gestures, pointer switch", pointerSwitch());
+		check("gestures, drag across the scroll axis", dragAcross());
+		System.exit(sFailures == 0 ? 0 : 1);
+	}
+
+	private static void check(String name, boolean ok) {
+		System.out.println(String.format("%-40s %s", name, ok ? "ok" : "FAILED"));
+		if (!ok) {
+			sFailures++;
+		}
+	}
+
+	/**
+	 * prints what was wrong, the check fails on the first one
+	 */
+	private static boolean expect(boolean ok, String what) {
+		if (!ok) {
+			System.out.println("  " + what);
+		}
+		return ok;
+	}
+
+	private static boolean bounds(BoundsModel model, int pos, int selected,
+			int left, int top, int right, int bottom) {
+		Bounds b = new Bounds();
+		model.getLayoutBounds(pos, selected, b);
+		return expect((b.left == left) && (b.top == top) && (b.right == right) && (b.bottom == bottom),
+				"position " + pos + " selected " + selected + " at " + b + ", expected "
+						+ new Bounds(left, top, right, bottom));
+	}
+
+	private static boolean hidden(TableBoundsModel model, int pos, int selected) {
+		Bounds b = new Bounds();
+		model.getLayoutBounds(pos, selected, b);
+		FloatBounds f = new FloatBounds();
+		model.getLayoutBounds(pos, selected, f);
+		return expect(model.getSlot(pos, selected) == TableBoundsModel.HIDDEN,
+				"position " + pos + " selected " + selected + " is in slot "
+						+ model.getSlot(pos, selected))
+				&& expect((b.right <= 0) && (b.bottom <= 0) && (f.right <= 0) && (f.bottom <= 0),
+						"hidden position " + pos + " is on screen at " + b + " / " + f);
+	}
+
+	/**
+	 * the selected item in the anchor slot, its neighbours either
+	 * side and the rest hidden
+	 */
+	private static boolean offsetMapping() {
+		TableBoundsModel model = new TableBoundsModel(PORTRAIT, LANDSCAPE, 0, null, 1);
+		model.onSizeChanged(WIDTH, HEIGHT, 0, 0);
+		FloatBounds f = new FloatBounds();
+		model.getLayoutBounds(5, 5, f);
+		return expect(model.getSlot(5, 5) == 1, "selected item not in the anchor slot")
+				&& bounds(model, 4, 5, 100, 0, 900, 600)
+				&& bounds(model, 5, 5, 100, 600, 900, 1400)
+				&& bounds(model, 6, 5, 100, 1400, 900, 2000)
+				&& expect((f.left == 100f) && (f.top == 600f) && (f.right == 900f) && (f.bottom == 1400f),
+						"float bounds of the anchor slot " + f)
+				&& hidden(model, 3, 5)
+				&& hidden(model, 7, 5)
+				// at the first item the slot before it is empty
+				&& bounds(model, 0, 0, 100, 600, 900, 1400)
+				&& bounds(model, 1, 0, 100, 1400, 900, 2000)
+				&& hidden(model, 2, 0);
+	}
+
+	/**
+	 * a row per selection, including HIDDEN entries and positions
+	 * outside the table
+	 */
+	private static boolean explicitMapping() {
+		final int H = TableBoundsModel.HIDDEN;
+		int[] slotFor = {
+				1, 2, H,
+				0, 1, 2,
+				H, 0, 1 };
+		TableBoundsModel model = new TableBoundsModel(PORTRAIT, null, 3, slotFor, 0);
+		model.onSizeChanged(WIDTH, HEIGHT, 0, 0);
+		boolean ok = bounds(model, 0, 0, 100, 600, 900, 1400)
+				&& bounds(model, 1, 0, 100, 1400, 900, 2000)
+				&& hidden(model, 2, 0)
+				&& bounds(model, 0, 1, 100, 0, 900, 600)
+				&& bounds(model, 2, 1, 100, 1400, 900, 2000)
+				&& hidden(model, 0, 2)
+				&& bounds(model, 2, 2, 100, 600, 900, 1400)
+				&& hidden(model, 3, 0)
+				&& hidden(model, 0, 3)
+				&& hidden(model, -1, 1);
+		// without landscape slots the portrait ones are used
+		model.onSizeChanged(HEIGHT, WIDTH, WIDTH, HEIGHT);
+		return ok && bounds(model, 0, 0, 200, 300, 1800, 700);
+	}
+
+	/**
+	 * slots only portrait has are hidden in landscape, and a table
+	 * may only use the slots both orientations have
+	 */
+	private static boolean fewerLandscapeSlots() {
+		TableBoundsModel model = new TableBoundsModel(PORTRAIT, LANDSCAPE, 0, null, 0);
+		model.onSizeChanged(WIDTH, HEIGHT, 0, 0);
+		boolean ok = bounds(model, 2, 0, 100, 1400, 900, 2000);
+		model.onSizeChanged(HEIGHT, WIDTH, WIDTH, HEIGHT);
+		ok = ok && bounds(model, 0, 0, 0, 100, 1000, 900)
+				&& bounds(model, 1, 0, 1000, 100, 2000, 900)
+				&& hidden(model, 2, 0);
+		// back to portrait, the third slot is there again
+		model.onSizeChanged(WIDTH, HEIGHT, HEIGHT, WIDTH);
+		ok = ok && bounds(model, 2, 0, 100, 1400, 900, 2000);
+
+		return ok && rejects("anchor in a portrait only slot", PORTRAIT, LANDSCAPE, 0, null, 2)
+				&& rejects("explicit mapping to a portrait only slot", PORTRAIT, LANDSCAPE, 1,
+						new int[] { 2 }, 0);
+	}
+
+	private static boolean badTables() {
+		return rejects("no portrait slots", new float[0], null, 0, null, 0)
+				&& rejects("a portrait slot short of four", new float[] { 0, 0, 1 }, null, 0, null, 0)
+				&& rejects("a landscape slot short of four", PORTRAIT, new float[] { 0, 0, 1 }, 0,
+						null, 0)
+				&& rejects("negative anchor", PORTRAIT, null, 0, null, -1)
+				&& rejects("anchor past the slots", PORTRAIT, null, 0, null, 3)
+				&& rejects("mapping short of a row", PORTRAIT, null, 2, new int[] { 0, 1, 2 }, 0)
+				&& rejects("mapping below HIDDEN", PORTRAIT, null, 1, new int[] { -2 }, 0)
+				&& rejects("mapping past the slots", PORTRAIT, null, 1, new int[] { 3 }, 0);
+	}
+
+	private static boolean rejects(String what, float[] portrait, float[] landscape,
+			int positions, int[] slotFor, int anchor) {
+		try {
+			new TableBoundsModel(portrait, landscape, positions, slotFor, anchor);
+		} catch (IllegalArgumentException e) {
+			return true;
+		}
+		return expect(false, "accepted " + what);
+	}
+
+	/**
+	 * five children on top of each other so every one of them is
+	 * under the middle
+	 */
+	private static class Stacked implements BoundsModel {
+		public void onSizeChanged(int width, int height, int oldw, int oldh) {
+		}
+
+		public void getLayoutBounds(int pos, int selected, Bounds out) {
+			out.set(0, 0, 100, 100);
+		}
+	}
+
+	/**
+	 * the further from the selection the higher up, ties broken
+	 * by index
+	 */
+	private static final class StackedFarOnTop extends Stacked implements ZOrderModel {
+		public int getZOrder(int pos, int selected) {
+			return Math.abs(pos - selected);
+		}
+	}
+
+	private static LayoutEngine settled(BoundsModel model, int selected) {
+		LayoutEngine engine = new LayoutEngine(model);
+		engine.setCount(5);
+		engine.sizeChanged(100, 100, 0, 0);
+		engine.setSelected(selected);
+		engine.settle();
+		return engine;
+	}
+
+	private static boolean drawOrder(LayoutEngine engine, int... expected) {
+		StringBuilder order = new StringBuilder();
+		boolean ok = true;
+		for (int i = 0; i < expected.length; i++) {
+			order.append(' ').append(engine.getDrawingChild(i));
+			ok &= engine.getDrawingChild(i) == expected[i];
+		}
+		return expect(ok, "drawn in order" + order + " with " + engine.getSelected() + " selected")
+				&& expect(engine.hitTest(50, 50) == expected[expected.length - 1],
+						"hit " + engine.hitTest(50, 50) + ", not the child on top")
+				&& expect(engine.hitTest(150, 50) == -1, "hit a child outside them all");
+	}
+
+	/**
+	 * without a ZOrderModel the selected child is on top and the
+	 * rest in index order
+	 */
+	private static boolean defaultDrawOrder() {
+		LayoutEngine engine = settled(new Stacked(), 2);
+		boolean ok = drawOrder(engine, 0, 1, 3, 4, 2);
+		engine.setSelected(4);
+		engine.settle();
+		return ok && drawOrder(engine, 0, 1, 2, 3, 4);
+	}
+
+	/**
+	 * the model's order, for drawing and hit testing alike, and
+	 * worked out again when the selection or the model changes
+	 */
+	private static boolean zOrder() {
+		LayoutEngine engine = settled(new StackedFarOnTop(), 2);
+		boolean ok = drawOrder(engine, 2, 1, 3, 0, 4);
+		engine.setSelected(0);
+		engine.settle();
+		ok = ok && drawOrder(engine, 0, 1, 2, 3, 4);
+		engine.setSelected(4);
+		engine.settle();
+		ok = ok && drawOrder(engine, 4, 3, 2, 1, 0);
+		// dropping the z order goes back to the default
+		engine.setModel(new Stacked());
+		return ok && drawOrder(engine, 0, 1, 2, 3, 4);
+	}
+
+	/**
+	 * after the active pointer changes, slop and axis are measured
+	 * from where the new pointer is, on both axes
+	 */
+	private static boolean pointerSwitch() {
+		GestureRecognizer gestures = new GestureRecognizer(10, 50);
+		gestures.down(0, 100, 100);
+		gestures.pointerChanged(16, 300, 500);
+		boolean ok = expect(!gestures.move(32, 302, 502),
+				"a two pixel move of the new pointer started a drag");
+		return ok && expect(gestures.move(48, 340, 502), "the new pointer's drag was missed")
+				&& expect(gestures.getDragAxis() == GestureRecognizer.AXIS_X,
+						"dragged along " + gestures.getDragAxis() + ", not x");
+	}
+
+	/**
+	 * a drag across the scroll axis is neither a drag nor a tap, one
+	 * along it flings
+	 */
+	private static boolean dragAcross() {
+		GestureRecognizer gestures = new GestureRecognizer(10, 50);
+		gestures.down(0, 100, 100);
+		boolean ok = expect(!gestures.move(16, 102, 140), "a vertical drag was taken")
+				&& expect(gestures.isDraggingAcross(), "a vertical drag was not left to the parent")
+				&& expect(!gestures.move(32, 160, 140), "a drag turned back along x was taken")
+				&& expect(gestures.up(0, -3000) == GestureRecognizer.NONE,
+						"released as " + gestures.up(0, -3000) + " across the axis");
+
+		gestures.setScrollAxis(GestureRecognizer.AXIS_Y);
+		gestures.down(0, 100, 100);
+		return ok && expect(gestures.move(16, 102, 140), "a vertical drag was missed")
+				&& expect(!gestures.isDraggingAcross(), "a drag along y was left to the parent")
+				&& expect(gestures.up(0, -3000) == GestureRecognizer.FLING_Y, "no vertical fling");
+	}
+}
@@ -0,0 +1,165 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import com.ctc.tutorial.core.Bounds;
+import com.ctc.tutorial.core.DefaultBoundsModel;
+import com.ctc.tutorial.core.Easing;
+import com.ctc.tutorial.core.LayoutEngine;
+import com.ctc.tutorial.core.OvershootEasing;
+import com.ctc.tutorial.core.SampleBoundsModel;
+
+/**
+ * JMH micro benchmarks for the layout core, run on a plain JVM.
+ *
+ * Covers the model lookups, a full "compute all rects for a
+ * selection" pass, one animation step for 10, 1 000 and 100 000
+ * children and the easing curve.  Run with the GC profiler to get
+ * the bytes allocated per operation,
+ *
+ *   cd bench
+ *   mvn -B package
+ *   java -jar target/benchmarks.jar -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(2)
+public class LayoutBenchmark {
+
+	private static final int WIDTH = 720;
+	private static final int HEIGHT = 1280;
+
+	/**
+	 * the two model lookups, cycling through positions and
+	 * selections
+	 */
+	@State(Scope.Thread)
+	public static class Models {
+		final DefaultBoundsModel defaultModel = new DefaultBoundsModel();
+		final SampleBoundsModel sampleModel = new SampleBoundsModel();
+		final Bounds out = new Bounds();
+		int pos = 0;
+		int selected = 0;
+
+		@Setup
+		public void setup() {
+			defaultModel.onSizeChanged(WIDTH, HEIGHT, 0, 0);
+			sampleModel.onSizeChanged(WIDTH, HEIGHT, 0, 0);
+		}
+	}
+
+	/**
+	 * an engine with count children settled on the first item
+	 */
+	@State(Scope.Thread)
+	public static class Engine {
+		@Param({ "10", "1000", "100000" })
+		public int count;
+
+		LayoutEngine engine;
+
+		@Setup
+		public void setup() {
+			engine = new LayoutEngine(new DefaultBoundsModel());
+			engine.sizeChanged(WIDTH, HEIGHT, 0, 0);
+			engine.setCount(count);
+			engine.settle();
+		}
+	}
+
+	/**
+	 * the same engine part way into an animation to the middle item
+	 */
+	@State(Scope.Thread)
+	public static class Animating extends Engine {
+		float t = 0f;
+
+		@Override
+		@Setup
+		public void setup() {
+			super.setup();
+			engine.moveTo(count / 2);
+		}
+	}
+
+	@State(Scope.Thread)
+	public static class Curve {
+		final Easing easing = new OvershootEasing();
+		float t = 0f;
+	}
+
+	@Benchmark
+	public int defaultModelLookup(Models m) {
+		m.pos = (m.pos + 1) & 15;
+		m.defaultModel.getLayoutBounds(m.pos, 8, m.out);
+		return m.out.left;
+	}
+
+	@Benchmark
+	public int sampleModelLookup(Models m) {
+		if (++m.pos >= 9) {
+			m.pos = 0;
+			m.selected = (m.selected + 1) % 9;
+		}
+		m.sampleModel.getLayoutBounds(m.pos, m.selected, m.out);
+		return m.out.left;
+	}
+
+	@Benchmark
+	public int settle(Engine e) {
+		LayoutEngine engine = e.engine;
+		engine.setSelected((engine.getSelected() + 1) % e.count);
+		engine.settle();
+		return engine.getLeft(0);
+	}
+
+	@Benchmark
+	public void layoutAtTime(Animating a, Blackhole bh) {
+		a.t += 0.03f;
+		if (a.t > 1f) {
+			a.t = 0f;
+		}
+		a.engine.layoutAtTime(a.t);
+		bh.consume(a.engine.getCurrentRects());
+	}
+
+	@Benchmark
+	public float ease(Curve c) {
+		c.t += 0.001f;
+		if (c.t > 1f) {
+			c.t = 0f;
+		}
+		return c.easing.ease(c.t);
+	}
+}
@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.bench;
+
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.Arrays;
+
+import com.ctc.tutorial.core.DefaultBoundsModel;
+import com.ctc.tutorial.core.GestureRecognizer;
+import com.ctc.tutorial.core.LayoutEngine;
+import com.ctc.tutorial.core.ManualClock;
+import com.ctc.tutorial.core.ReplayHarness;
+import com.ctc.tutorial.core.TouchTrace;
+
+/**
+ * Replays recorded touch traces (see bench/traces) against the layout
+ * engine with a deterministic clock and prints the work done per
+ * frame, model calls, bytes allocated and the final state.
+ *
+ *   java -cp out com.ctc.tutorial.bench.ReplayRunner [-n children] trace...
+ */
+public final class ReplayRunner {
+
+	private static final int WIDTH = 720;
+	private static final int HEIGHT = 1280;
+	private static final int FRAME_MILLIS = 16;
+
+	// typical scaled values for a medium density screen
+	private static final int TOUCH_SLOP = 16;
+	private static final int MINIMUM_VELOCITY = 50;
+	private static final int MAXIMUM_VELOCITY = 8000;
+
+	public static void main(String[] args) throws IOException {
+		int count = 9;
+		int first = 0;
+		if ((args.length > 1) && "-n".equals(args[0])) {
+			count = Integer.parseInt(args[1]);
+			first = 2;
+		}
+		if (first >= args.length) {
+			System.err.println("usage: ReplayRunner [-n children] trace...");
+			System.exit(1);
+		}
+		for (int i = first; i < args.length; i++) {
+			FileReader in = new FileReader(args[i]);
+			try {
+				replay(args[i], TouchTrace.parse(in), count);
+			} finally {
+				in.close();
+			}
+		}
+	}
+
+	static void replay(String name, TouchTrace trace, int count) {
+		LayoutEngine engine = new LayoutEngine(new DefaultBoundsModel());
+		engine.sizeChanged(WIDTH, HEIGHT, 0, 0);
+		engine.setCount(count);
+		engine.settle();
+
+		ReplayHarness harness = new ReplayHarness(engine,
+				new GestureRecognizer(TOUCH_SLOP, MINIMUM_VELOCITY),
+				new ManualClock(0), FRAME_MILLIS, MAXIMUM_VELOCITY);
+
+		long allocated = AllocationCheck.allocatedBytes();
+		ReplayHarness.Result r = harness.run(trace);
+		allocated = AllocationCheck.allocatedBytes() - allocated;
+
+		long[] sorted = Arrays.copyOf(r.frameNanos, r.frames);
+		Arrays.sort(sorted);
+		System.out.println(name + " (" + count + " children)");
+		System.out.println("  frames            " + r.frames);
+		if (r.frames > 0) {
+			System.out.println("  frame step median " + sorted[r.frames / 2] + " ns");
+			System.out.println("  frame step max    " + sorted[r.frames - 1] + " ns");
+		}
+		System.out.println("  total step time   " + r.totalFrameNanos() + " ns");
+		System.out.println("  model calls       " + r.modelCalls);
+		System.out.println("  bytes allocated   " + allocated);
+		System.out.println("  taps / flings     " + r.taps + " / " + r.flings);
+		System.out.println("  selection changes " + r.selectionChanges);
+		System.out.println("  activations       " + r.activations);
+		System.out.println("  final selected    " + r.finalSelected);
+		System.out.println("  final rects hash  " + Arrays.hashCode(r.finalRects));
+	}
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ctc.tutorial;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.xmlpull.v1.XmlPullParser;
+
+import android.graphics.Rect;
+import android.util.Xml;
+import android.view.InflateException;
+
+/**
+ * TableLayoutModel's XML, the part of the tables BehaviourCheck
+ * cannot reach without the framework
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE)
+public class TableLayoutModelTest {
+
+	private static final String SLOTS = "<portrait>"
+			+ "<slot left='0.1' top='0' right='0.9' bottom='0.3' />"
+			+ "<slot left='0.1' top='0.3' right='0.9' bottom='0.7' />"
+			+ "<slot left='0.1' top='0.7' right='0.9' bottom='1' />"
+			+ "</portrait>";
+
+	private static TableLayoutModel parse(String xml) throws Exception {
+		XmlPullParser parser = Xml.newPullParser();
+		parser.setInput(new StringReader(xml));
+		return TableLayoutModel.parse(parser);
+	}
+
+	private static void assertRejected(String xml, String message) throws Exception {
+		try {
+			parse(xml);
+			fail("accepted a table with " + message);
+		} catch (InflateException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains(message));
+		}
+	}
+
+	@Test
+	public void offsetTable() throws Exception {
+		TableLayoutModel model = parse("<layout-table mapping='offset' anchor='1'>" + SLOTS
+				+ "</layout-table>");
+		model.onSizeChanged(1000, 2000, 0, 0);
+		assertEquals(new Rect(100, 600, 900, 1400), model.getLayoutRect(3, 3));
+		assertEquals(new Rect(100, 1400, 900, 2000), model.getLayoutRect(4, 3));
+		assertEquals(TableLayoutModel.HIDDEN, model.getSlot(5, 3));
+	}
+
+	@Test
+	public void explicitTable() throws Exception {
+		TableLayoutModel model = parse("<layout-table mapping='explicit' positions='2'>" + SLOTS
+				+ "<select index='1' slots='-1 2' />"
+				+ "<select index='0' slots='1 2' />"
+				+ "</layout-table>");
+		model.onSizeChanged(1000, 2000, 0, 0);
+		assertEquals(1, model.getSlot(0, 0));
+		assertEquals(TableLayoutModel.HIDDEN, model.getSlot(0, 1));
+		assertEquals(new Rect(100, 1400, 900, 2000), model.getLayoutRect(1, 1));
+	}
+
+	@Test
+	public void missingRow() throws Exception {
+		assertRejected("<layout-table mapping='explicit' positions='2'>" + SLOTS
+				+ "<select index='1' slots='0 1' />"
+				+ "</layout-table>", "no select row for index 0");
+	}
+
+	@Test
+	public void repeatedRow() throws Exception {
+		assertRejected("<layout-table mapping='explicit' positions='2'>" + SLOTS
+				+ "<select index='0' slots='0 1' />"
+				+ "<select index='0' slots='1 2' />"
+				+ "<select index='1' slots='0 1' />"
+				+ "</layout-table>", "select index 0 given twice");
+	}
+
+	@Test
+	public void anchorOutOfRange() throws Exception {
+		assertRejected("<layout-table mapping='offset' anchor='3'>" + SLOTS
+				+ "</layout-table>", "anchor slot 3 out of range");
+	}
+
+	@Test
+	public void landscapeShortOfPortrait() throws Exception {
+		// only the two slots both orientations have can be used
+		assertRejected("<layout-table mapping='explicit' positions='1'>" + SLOTS
+				+ "<landscape>"
+				+ "<slot left='0' top='0.1' right='0.5' bottom='0.9' />"
+				+ "<slot left='0.5' top='0.1' right='1' bottom='0.9' />"
+				+ "</landscape>"
+				+ "<select index='0' slots='2' />"
+				+ "</layout-table>", "mapping uses slot 2 but there are only 2");
+	}
+}
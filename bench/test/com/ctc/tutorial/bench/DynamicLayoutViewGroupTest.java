@@ -0,0 +1,253 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.ctc.tutorial.bench;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.Shadows;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+import org.robolectric.shadows.ShadowMotionEvent;
+
+import android.os.Looper;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.View.MeasureSpec;
+import android.view.ViewGroup;
+
+import com.ctc.tutorial.DynamicLayoutViewGroup;
+import com.ctc.tutorial.FrameScheduler;
+
+/**
+ * DynamicLayoutViewGroup behaviour that needs the view layer, run on
+ * the frames and shadows of ViewAllocationTest
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE, shadows = {
+		ViewAllocationTest.FramePosts.class, ViewAllocationTest.Velocity.class })
+public class DynamicLayoutViewGroupTest {
+
+	private static final int CHILDREN = 9;
+
+	private DynamicLayoutViewGroup mGroup;
+
+	@Before
+	public void setUp() {
+		ViewAllocationTest.Frames.clear();
+		mGroup = new DynamicLayoutViewGroup(RuntimeEnvironment.application);
+		mGroup.setAnimationClock(ViewAllocationTest.Frames.clock);
+		for (int i = 0; i < CHILDREN; i++) {
+			mGroup.addView(new ViewAllocationTest.Leaf());
+		}
+		mGroup.measure(MeasureSpec.makeMeasureSpec(720, MeasureSpec.EXACTLY),
+				MeasureSpec.makeMeasureSpec(1280, MeasureSpec.EXACTLY));
+		mGroup.layout(0, 0, 720, 1280);
+	}
+
+	/**
+	 * children removed while an animation runs are skipped by the
+	 * frames still to come, not dereferenced
+	 */
+	@Test
+	public void removeChildrenMidAnimation() {
+		mGroup.setSelection(4);
+		frames(2);
+		mGroup.removeViewAt(CHILDREN - 1);
+		mGroup.removeViewAt(CHILDREN - 2);
+		frames(100);
+		assertEquals(CHILDREN - 2, mGroup.getChildCount());
+		assertEquals(4, mGroup.getSelection());
+	}
+
+	/**
+	 * the same with the shared scheduler stepping the animation,
+	 * which does not count the children again before each step
+	 */
+	@Test
+	public void removeChildrenMidScheduledAnimation() {
+		final FrameScheduler scheduler = new FrameScheduler(Looper.getMainLooper());
+		scheduler.setClock(ViewAllocationTest.Frames.clock);
+		mGroup.setFrameScheduler(scheduler);
+		removeChildrenMidAnimation();
+	}
+
+	/**
+	 * a nested scrolling parent along one axis that records what the
+	 * group offers it, without scrolling
+	 */
+	static final class NestedParent extends ViewGroup {
+		final int mAxes;
+		int mStarted = 0;
+		int mOfferedX = 0;
+		int mOfferedY = 0;
+		boolean mDisallowed = false;
+
+		NestedParent(int axes) {
+			super(RuntimeEnvironment.application);
+			mAxes = axes;
+		}
+
+		@Override
+		public boolean onStartNestedScroll(View child, View target, int axes) {
+			if ((axes & mAxes) == 0) {
+				return false;
+			}
+			mStarted = axes;
+			return true;
+		}
+
+		@Override
+		public void onNestedPreScroll(View target, int dx, int dy, int[] consumed) {
+			mOfferedX += Math.abs(dx);
+			mOfferedY += Math.abs(dy);
+		}
+
+		@Override
+		public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+			mDisallowed |= disallowIntercept;
+		}
+
+		@Override
+		protected void onLayout(boolean changed, int l, int t, int r, int b) {
+		}
+	}
+
+	/**
+	 * a vertical drag over a horizontal group is the vertical
+	 * parent's: no nested scroll along y is started, the parent is
+	 * free to intercept and nothing is selected
+	 */
+	@Test
+	public void dragAcrossGoesToParent() {
+		final NestedParent parent = new NestedParent(View.SCROLL_AXIS_VERTICAL);
+		parent.addView(mGroup);
+		touch(mGroup, 0, 40);
+		assertEquals(0, parent.mStarted);
+		assertFalse(parent.mDisallowed);
+		assertEquals(0, mGroup.getSelection());
+	}
+
+	/**
+	 * a horizontal drag with some vertical wobble offers the parent
+	 * the horizontal motion only
+	 */
+	@Test
+	public void dragAlongOffersOnlyItsAxis() {
+		final NestedParent parent = new NestedParent(View.SCROLL_AXIS_HORIZONTAL);
+		parent.addView(mGroup);
+		touch(mGroup, -40, 6);
+		assertEquals(View.SCROLL_AXIS_HORIZONTAL, parent.mStarted);
+		assertTrue(parent.mDisallowed);
+		assertTrue(parent.mOfferedX > 0);
+		assertEquals(0, parent.mOfferedY);
+		assertEquals(1, mGroup.getSelection());
+	}
+
+	/**
+	 * with the scroll axis declared vertical, vertical drags fling
+	 * the selection and horizontal ones are left alone
+	 */
+	@Test
+	public void verticalScrollAxis() {
+		final NestedParent parent = new NestedParent(View.SCROLL_AXIS_HORIZONTAL);
+		parent.addView(mGroup);
+		mGroup.setScrollAxis(View.SCROLL_AXIS_VERTICAL);
+		touch(mGroup, -40, 0);
+		assertEquals(0, parent.mStarted);
+		assertFalse(parent.mDisallowed);
+		assertEquals(0, mGroup.getSelection());
+		frames(100);
+		touch(mGroup, 0, -40);
+		assertTrue(parent.mDisallowed);
+		assertEquals(1, mGroup.getSelection());
+	}
+
+	/**
+	 * when the dragging finger lifts and another carries on, the
+	 * parent is offered the new finger's motion, not the gap
+	 * between the two
+	 */
+	@Test
+	public void pointerSwitchKeepsNestedDeltas() {
+		final NestedParent parent = new NestedParent(View.SCROLL_AXIS_HORIZONTAL);
+		parent.addView(mGroup);
+		final long down = ViewAllocationTest.Frames.clock.uptimeMillis();
+		dispatch(mGroup, MotionEvent.obtain(down, down, MotionEvent.ACTION_DOWN, 300, 640, 0));
+		for (int i = 1; i <= 4; i++) {
+			dispatch(mGroup, MotionEvent.obtain(down, down + i * 16, MotionEvent.ACTION_MOVE,
+					300 - i * 10, 640, 0));
+		}
+		// a second finger 300 pixels to the right, then the first lifts
+		dispatch(mGroup, fingers(down, 80, MotionEvent.ACTION_POINTER_DOWN
+				| (1 << MotionEvent.ACTION_POINTER_INDEX_SHIFT), 0, 260, 560));
+		dispatch(mGroup, fingers(down, 96, MotionEvent.ACTION_POINTER_UP, 0, 260, 560));
+		final int before = parent.mOfferedX;
+		dispatch(mGroup, fingers(down, 112, MotionEvent.ACTION_MOVE, 1, 550));
+		assertEquals(10, parent.mOfferedX - before);
+	}
+
+	/**
+	 * an event with one or two fingers at x0 (and x1), their ids
+	 * counting up from firstId.  Robolectric's MotionEvent only takes
+	 * a second pointer through its shadow
+	 */
+	private static MotionEvent fingers(long down, int t, int action, int firstId, float x0,
+			float... x1) {
+		final MotionEvent ev = MotionEvent.obtain(down, down + t, action, x0, 640, 0);
+		final ShadowMotionEvent shadow = Shadows.shadowOf(ev);
+		if (x1.length > 0) {
+			shadow.setPointer2(x1[0], 640);
+		}
+		shadow.setPointerIds(firstId, firstId + 1);
+		return ev;
+	}
+
+	/**
+	 * a down, nine moves of dx, dy a frame and an up, straight to
+	 * the group's onTouchEvent
+	 */
+	private static void touch(DynamicLayoutViewGroup group, int dx, int dy) {
+		final long down = ViewAllocationTest.Frames.clock.uptimeMillis();
+		final float x = 360;
+		final float y = 640;
+		dispatch(group, MotionEvent.obtain(down, down, MotionEvent.ACTION_DOWN, x, y, 0));
+		for (int i = 1; i < 10; i++) {
+			dispatch(group, MotionEvent.obtain(down, down + i * 16, MotionEvent.ACTION_MOVE,
+					x + i * dx, y + i * dy, 0));
+		}
+		dispatch(group, MotionEvent.obtain(down, down + 160, MotionEvent.ACTION_UP,
+				x + 10 * dx, y + 10 * dy, 0));
+	}
+
+	private static void dispatch(DynamicLayoutViewGroup group, MotionEvent ev) {
+		group.onTouchEvent(ev);
+		ev.recycle();
+	}
+
+	private static void frames(int n) {
+		for (int i = 0; i < n; i++) {
+			ViewAllocationTest.Frames.frame();
+			ShadowLooper.idleMainLooper(16);
+		}
+	}
+}
@@ -0,0 +1,354 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.bench;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.annotation.Implementation;
+import org.robolectric.annotation.Implements;
+import org.robolectric.shadows.ShadowViewGroup;
+
+import android.view.MotionEvent;
+import android.view.VelocityTracker;
+import android.view.ViewGroup;
+import android.view.View.MeasureSpec;
+
+import com.ctc.tutorial.DynamicLayoutViewGroup;
+import com.ctc.tutorial.core.ManualClock;
+
+/**
+ * The view layer half of AllocationCheck: steady state frames of a
+ * DynamicLayoutViewGroup, driven through layoutChildren() and
+ * onTouchEvent() under Robolectric, may not allocate a single byte.
+ *
+ * Robolectric's scheduler allocates for every post, which the
+ * device's pooled messages do not, so the FramePosts shadow hands the
+ * posted runnables to Frames instead, and each frame of the test runs
+ * the ones that are due like the looper would.  Robolectric's own
+ * invalidate() and onLayout() shadows go through reflection to reach
+ * the real code and allocate on every call, so FramePosts quiets
+ * invalidate() as well (a detached group has nowhere to send it) and
+ * the children are Leaf groups, which share that shadow and override
+ * onLayout() themselves.  Robolectric's VelocityTracker boxes its
+ * results where the device's native one does not, so Velocity stands
+ * in for it.  Drawing is not covered.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(sdk = 27, manifest = Config.NONE, shadows = {
+		ViewAllocationTest.FramePosts.class, ViewAllocationTest.Velocity.class })
+public class ViewAllocationTest {
+
+	private static final int WIDTH = 720;
+	private static final int HEIGHT = 1280;
+	private static final int CHILDREN = 9;
+	private static final int FRAME_MILLIS = 16;
+
+	/**
+	 * Stands in for the looper: View posts wait here for the next
+	 * frame of the test
+	 */
+	static final class Frames {
+		static final ManualClock clock = new ManualClock(1000);
+		private static final Runnable[] sPosted = new Runnable[8];
+		private static final long[] sDue = new long[8];
+		private static final Runnable[] sRunning = new Runnable[8];
+
+		static void post(Runnable action, long delayMillis) {
+			remove(action);
+			for (int i = 0; i < sPosted.length; i++) {
+				if (sPosted[i] == null) {
+					sPosted[i] = action;
+					sDue[i] = clock.uptimeMillis() + delayMillis;
+					return;
+				}
+			}
+			throw new IllegalStateException("too many posts");
+		}
+
+		static void remove(Runnable action) {
+			for (int i = 0; i < sPosted.length; i++) {
+				if (sPosted[i] == action) {
+					sPosted[i] = null;
+				}
+			}
+		}
+
+		static boolean hasPosted() {
+			for (int i = 0; i < sPosted.length; i++) {
+				if (sPosted[i] != null) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		static void clear() {
+			for (int i = 0; i < sPosted.length; i++) {
+				sPosted[i] = null;
+			}
+		}
+
+		/**
+		 * advance one frame and run what has come due
+		 */
+		static void frame() {
+			clock.advance(FRAME_MILLIS);
+			final long now = clock.uptimeMillis();
+			int n = 0;
+			for (int i = 0; i < sPosted.length; i++) {
+				if ((sPosted[i] != null) && (sDue[i] <= now)) {
+					sRunning[n++] = sPosted[i];
+					sPosted[i] = null;
+				}
+			}
+			for (int i = 0; i < n; i++) {
+				sRunning[i].run();
+				sRunning[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * sends the groups' posts to Frames and quiets their invalidate()
+	 */
+	@Implements(ViewGroup.class)
+	public static class FramePosts extends ShadowViewGroup {
+		@Implementation
+		public void invalidate() {
+		}
+
+		@Implementation
+		public void post(Runnable action) {
+			Frames.post(action, 0);
+		}
+
+		@Implementation
+		public void postDelayed(Runnable action, long delayMillis) {
+			Frames.post(action, delayMillis);
+		}
+
+		@Implementation
+		public void removeCallbacks(Runnable action) {
+			Frames.remove(action);
+		}
+	}
+
+	/**
+	 * an allocation free VelocityTracker for one pointer: the speed
+	 * from the oldest to the newest movement of the last 100ms
+	 */
+	@Implements(VelocityTracker.class)
+	public static class Velocity {
+		private static final int HISTORY = 16;
+		private static final long HORIZON_MILLIS = 100;
+
+		private final long[] mTime = new long[HISTORY];
+		private final float[] mX = new float[HISTORY];
+		private final float[] mY = new float[HISTORY];
+		private int mCount;
+		private int mNewest;
+		private float mXVelocity;
+		private float mYVelocity;
+
+		@Implementation
+		public void clear() {
+			mCount = 0;
+		}
+
+		@Implementation
+		public void addMovement(MotionEvent ev) {
+			if ((ev.getAction() & MotionEvent.ACTION_MASK) == MotionEvent.ACTION_DOWN) {
+				mCount = 0;
+			}
+			mNewest = (mNewest + 1) % HISTORY;
+			mTime[mNewest] = ev.getEventTime();
+			mX[mNewest] = ev.getX();
+			mY[mNewest] = ev.getY();
+			mCount = Math.min(mCount + 1, HISTORY);
+		}
+
+		@Implementation
+		public void computeCurrentVelocity(int units) {
+			computeCurrentVelocity(units, Float.MAX_VALUE);
+		}
+
+		@Implementation
+		public void computeCurrentVelocity(int units, float maxVelocity) {
+			mXVelocity = 0;
+			mYVelocity = 0;
+			int oldest = mNewest;
+			for (int i = 1; i < mCount; i++) {
+				final int k = (mNewest - i + HISTORY) % HISTORY;
+				if (mTime[mNewest] - mTime[k] > HORIZON_MILLIS) {
+					break;
+				}
+				oldest = k;
+			}
+			final long dt = mTime[mNewest] - mTime[oldest];
+			if (dt > 0) {
+				mXVelocity = clamp((mX[mNewest] - mX[oldest]) * units / dt, maxVelocity);
+				mYVelocity = clamp((mY[mNewest] - mY[oldest]) * units / dt, maxVelocity);
+			}
+		}
+
+		private static float clamp(float velocity, float max) {
+			return Math.max(-max, Math.min(max, velocity));
+		}
+
+		@Implementation
+		public float getXVelocity() {
+			return mXVelocity;
+		}
+
+		@Implementation
+		public float getYVelocity() {
+			return mYVelocity;
+		}
+
+		@Implementation
+		public float getXVelocity(int id) {
+			return mXVelocity;
+		}
+
+		@Implementation
+		public float getYVelocity(int id) {
+			return mYVelocity;
+		}
+	}
+
+	/**
+	 * an empty child; a plain View would get Robolectric's ShadowView
+	 */
+	static final class Leaf extends ViewGroup {
+		Leaf() {
+			super(RuntimeEnvironment.application);
+		}
+
+		@Override
+		protected void onLayout(boolean changed, int l, int t, int r, int b) {
+		}
+	}
+
+	private DynamicLayoutViewGroup mGroup;
+
+	@Before
+	public void setUp() {
+		Frames.clear();
+		mGroup = new DynamicLayoutViewGroup(RuntimeEnvironment.application);
+		mGroup.setAnimationClock(Frames.clock);
+		for (int i = 0; i < CHILDREN; i++) {
+			mGroup.addView(new Leaf());
+		}
+		mGroup.measure(MeasureSpec.makeMeasureSpec(WIDTH, MeasureSpec.EXACTLY),
+				MeasureSpec.makeMeasureSpec(HEIGHT, MeasureSpec.EXACTLY));
+		mGroup.layout(0, 0, WIDTH, HEIGHT);
+	}
+
+	@Test
+	public void selectionAnimationDefaultModel() {
+		assertTrue(AllocationCheck.check("view animation, default model",
+				selectionAnimation(mGroup)));
+	}
+
+	@Test
+	public void selectionAnimationRectModel() {
+		// a subclass takes the Rect path through LayoutModelAdapter
+		mGroup.setLayoutModel(mGroup.new DefaultLayoutModel() {
+		});
+		assertTrue(AllocationCheck.check("view animation, Rect model",
+				selectionAnimation(mGroup)));
+	}
+
+	@Test
+	public void dragAndFling() {
+		// the swipes have to fling, or there is little to check
+		final AllocationCheck.Scenario scenario = dragAndFling(mGroup);
+		final int before = mGroup.getSelection();
+		scenario.frames(40);
+		assertTrue(mGroup.getSelection() != before);
+		assertTrue(AllocationCheck.check("view drag and fling", scenario));
+	}
+
+	/**
+	 * keep moving the selection, one frame at a time
+	 */
+	static AllocationCheck.Scenario selectionAnimation(final DynamicLayoutViewGroup group) {
+		return new AllocationCheck.Scenario() {
+			int next = 1;
+
+			public void frames(int n) {
+				for (int i = 0; i < n; i++) {
+					if (!Frames.hasPosted()) {
+						// the last animation is over
+						group.setSelection(next);
+						next = (next + 1) % CHILDREN;
+					}
+					Frames.frame();
+				}
+			}
+		};
+	}
+
+	/**
+	 * swipes left and right across the group through onTouchEvent,
+	 * each released as a fling, with the animations they start
+	 * stepped on the same frames
+	 */
+	static AllocationCheck.Scenario dragAndFling(final DynamicLayoutViewGroup group) {
+		// the events are made once, a gesture replays them
+		final MotionEvent[] left = swipe(-40);
+		final MotionEvent[] right = swipe(40);
+		return new AllocationCheck.Scenario() {
+			int frame = 0;
+
+			public void frames(int n) {
+				for (int i = 0; i < n; i++) {
+					int phase = frame++ % 80;
+					MotionEvent[] swipe = (phase < 40) ? left : right;
+					phase %= 40;
+					if (phase < swipe.length) {
+						group.onTouchEvent(swipe[phase]);
+					}
+					Frames.frame();
+				}
+			}
+		};
+	}
+
+	/**
+	 * a down, nine moves of step pixels a frame and an up
+	 */
+	private static MotionEvent[] swipe(int step) {
+		final MotionEvent[] events = new MotionEvent[11];
+		final float x = WIDTH / 2;
+		final float y = HEIGHT / 2;
+		events[0] = MotionEvent.obtain(0, 0, MotionEvent.ACTION_DOWN, x, y, 0);
+		for (int i = 1; i < 10; i++) {
+			events[i] = MotionEvent.obtain(0, i * FRAME_MILLIS, MotionEvent.ACTION_MOVE,
+					x + i * step, y, 0);
+		}
+		events[10] = MotionEvent.obtain(0, 10 * FRAME_MILLIS, MotionEvent.ACTION_UP,
+				x + 10 * step, y, 0);
+		return events;
+	}
+}
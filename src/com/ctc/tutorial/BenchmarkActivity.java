@@ -0,0 +1,463 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+import android.app.Activity;
+import android.graphics.Color;
+import android.os.Build;
+import android.os.Bundle;
+import android.os.Debug;
+import android.os.Handler;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewGroup;
+import android.view.ViewTreeObserver;
+import android.widget.FrameLayout;
+import android.widget.ImageView;
+import android.widget.LinearLayout;
+import android.widget.TextView;
+
+/**
+ * A stress test for the DynamicLayoutViewGroup.  Fills a group with
+ * a configurable number of children, runs a fixed script of flings,
+ * slow drags and taps against it by injecting touch events, and
+ * writes frame times, layout and model call counts and memory use
+ * to a JSON file in the app's files directory.
+ *
+ * It has no launcher icon, start it from adb and configure it with
+ * intent extras, for example
+ *
+ *   adb shell am start -n com.ctc.tutorial/.BenchmarkActivity
+ *       --ei children 1000 --es complexity nested --es model table
+ *
+ * children    1 to 10000 (default 100)
+ * complexity  plain, image (default) or nested
+ * model       default or table (res/xml/sample_layout_table)
+ * rounds      times to repeat the script (default 3)
+ * pacing      1 to turn on adaptive pacing
+ * snapshots   1 to turn on layout snapshots
+ *
+ * The path of the results file is logged and shown on screen when
+ * the run is over.
+ */
+public class BenchmarkActivity extends Activity {
+	private static final String TAG = "CTC";
+
+	public static final String EXTRA_CHILDREN = "children";
+	public static final String EXTRA_COMPLEXITY = "complexity";
+	public static final String EXTRA_MODEL = "model";
+	public static final String EXTRA_ROUNDS = "rounds";
+	public static final String EXTRA_PACING = "pacing";
+	public static final String EXTRA_SNAPSHOTS = "snapshots";
+
+	public static final int MAX_CHILDREN = 10000;
+
+	/**
+	 * injected touch samples are this far apart, like a 120Hz panel
+	 */
+	private static final int TOUCH_SAMPLE_MILLIS = 8;
+
+	/**
+	 * time left after each gesture for its animation to finish
+	 */
+	private static final int STEP_GAP_MILLIS = 800;
+
+	/**
+	 * gaps between draws longer than this are idle time, not frames
+	 */
+	private static final long IDLE_GAP_NANOS = 250 * 1000000L;
+
+	// the scripted gestures, one round of the script is SCRIPT
+	private static final int FLING_NEXT = 0;
+	private static final int FLING_PREV = 1;
+	private static final int DRAG = 2;
+	private static final int TAP_NEXT = 3;
+	private static final int TAP_PREV = 4;
+	private static final int[] SCRIPT = {
+		FLING_NEXT, FLING_NEXT, FLING_NEXT, FLING_NEXT, FLING_NEXT,
+		DRAG, DRAG,
+		TAP_NEXT, TAP_NEXT, TAP_NEXT,
+		FLING_PREV, FLING_PREV, FLING_PREV,
+		TAP_PREV, TAP_PREV,
+	};
+
+	// samples in each kind of gesture, including down and up
+	private static final int FLING_SAMPLES = 8;
+	private static final int DRAG_SAMPLES = 40;
+	private static final int TAP_SAMPLES = 2;
+
+	private static final int[] DRAWABLES = {
+		R.drawable.one, R.drawable.two, R.drawable.three,
+		R.drawable.four, R.drawable.five, R.drawable.six,
+		R.drawable.seven, R.drawable.eight, R.drawable.nine,
+	};
+
+	private DynamicLayoutViewGroup mGroup;
+	private TextView mStatus;
+	private final Handler mHandler = new Handler();
+	private final LayoutMetrics mMetrics = new LayoutMetrics();
+	private final FrameRecorder mFrames = new FrameRecorder();
+
+	private int mChildren;
+	private String mComplexity;
+	private String mModel;
+	private int mRounds;
+	private boolean mPacing;
+	private boolean mSnapshots;
+
+	// script position
+	private int mStep;
+	private int mSample;
+	private long mDownTime;
+	private float mDownX;
+	private float mDownY;
+	private boolean mRunning;
+
+	private long mSetupMillis;
+	private long mStartTime;
+	private long mJavaHeapBefore;
+	private long mNativeHeapBefore;
+
+	@Override
+	public void onCreate(Bundle savedInstanceState) {
+		super.onCreate(savedInstanceState);
+
+		mChildren = Math.max(1, Math.min(MAX_CHILDREN,
+				getIntent().getIntExtra(EXTRA_CHILDREN, 100)));
+		mComplexity = stringExtra(EXTRA_COMPLEXITY, "image");
+		mModel = stringExtra(EXTRA_MODEL, "default");
+		mRounds = Math.max(1, getIntent().getIntExtra(EXTRA_ROUNDS, 3));
+		mPacing = getIntent().getIntExtra(EXTRA_PACING, 0) != 0;
+		mSnapshots = getIntent().getIntExtra(EXTRA_SNAPSHOTS, 0) != 0;
+
+		mJavaHeapBefore = javaHeapUsed();
+		mNativeHeapBefore = Debug.getNativeHeapAllocatedSize();
+		long setupStart = SystemClock.uptimeMillis();
+
+		mGroup = new DynamicLayoutViewGroup(this);
+		mGroup.setLayoutMetrics(mMetrics);
+		mGroup.setAdaptivePacing(mPacing);
+		mGroup.setLayoutSnapshotsEnabled(mSnapshots);
+		if ("table".equals(mModel)) {
+			mGroup.setLayoutModel(TableLayoutModel.load(getResources(), R.xml.sample_layout_table));
+		}
+		for (int i = 0; i < mChildren; i++) {
+			mGroup.addView(createChild(i));
+		}
+
+		mStatus = new TextView(this);
+		mStatus.setText("running " + mChildren + " " + mComplexity + " children");
+
+		FrameLayout root = new FrameLayout(this);
+		root.addView(mGroup, new FrameLayout.LayoutParams(
+				ViewGroup.LayoutParams.FILL_PARENT, ViewGroup.LayoutParams.FILL_PARENT));
+		root.addView(mStatus, new FrameLayout.LayoutParams(
+				ViewGroup.LayoutParams.FILL_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+		setContentView(root);
+		mGroup.getViewTreeObserver().addOnPreDrawListener(mFrames);
+		mSetupMillis = SystemClock.uptimeMillis() - setupStart;
+
+		// give the first layout and draw time to happen
+		mHandler.postDelayed(mRunScript, STEP_GAP_MILLIS);
+	}
+
+	@Override
+	protected void onPause() {
+		super.onPause();
+		// a run that loses the screen would measure nothing useful
+		mHandler.removeCallbacks(mRunScript);
+		if (mRunning) {
+			mRunning = false;
+			mStatus.setText("interrupted, no results written");
+		}
+	}
+
+	@Override
+	protected void onDestroy() {
+		super.onDestroy();
+		mHandler.removeCallbacks(mRunScript);
+		mGroup.getViewTreeObserver().removeOnPreDrawListener(mFrames);
+	}
+
+	private String stringExtra(String name, String defaultValue) {
+		String value = getIntent().getStringExtra(name);
+		return (value == null) ? defaultValue : value;
+	}
+
+	/**
+	 * plain: a coloured View, image: an ImageView with one of the
+	 * sample backgrounds, nested: an image and a label in a
+	 * LinearLayout
+	 */
+	private View createChild(int i) {
+		if ("plain".equals(mComplexity)) {
+			View v = new View(this);
+			v.setBackgroundColor(Color.HSVToColor(new float[] { (i * 37) % 360, 0.6f, 0.9f }));
+			return v;
+		}
+		ImageView image = new ImageView(this);
+		image.setBackgroundResource(DRAWABLES[i % DRAWABLES.length]);
+		if (!"nested".equals(mComplexity)) {
+			return image;
+		}
+		LinearLayout item = new LinearLayout(this);
+		item.setOrientation(LinearLayout.VERTICAL);
+		item.addView(image, new LinearLayout.LayoutParams(
+				ViewGroup.LayoutParams.FILL_PARENT, 0, 1));
+		TextView label = new TextView(this);
+		label.setText("Item " + i);
+		item.addView(label, new LinearLayout.LayoutParams(
+				ViewGroup.LayoutParams.FILL_PARENT, ViewGroup.LayoutParams.WRAP_CONTENT));
+		return item;
+	}
+
+	/**
+	 * Injects the script one touch sample at a time
+	 */
+	private final Runnable mRunScript = new Runnable() {
+		public void run() {
+			if (!mRunning) {
+				mRunning = true;
+				mStep = 0;
+				mSample = 0;
+				mMetrics.reset();
+				mFrames.reset();
+				mStartTime = SystemClock.uptimeMillis();
+			}
+			if (mStep >= SCRIPT.length * mRounds) {
+				finishRun(SystemClock.uptimeMillis() - mStartTime);
+				return;
+			}
+			int gesture = SCRIPT[mStep % SCRIPT.length];
+			if (injectSample(gesture, mSample)) {
+				mSample++;
+				mHandler.postDelayed(this, TOUCH_SAMPLE_MILLIS);
+			} else {
+				mStep++;
+				mSample = 0;
+				mHandler.postDelayed(this, STEP_GAP_MILLIS);
+			}
+		}
+	};
+
+	/**
+	 * send sample n of a gesture to the group
+	 * @return false once the gesture is over
+	 */
+	private boolean injectSample(int gesture, int n) {
+		final int samples = (gesture == DRAG) ? DRAG_SAMPLES
+				: ((gesture == TAP_NEXT) || (gesture == TAP_PREV)) ? TAP_SAMPLES
+				: FLING_SAMPLES;
+		if (n >= samples) {
+			return false;
+		}
+		final float w = mGroup.getWidth();
+		final float h = mGroup.getHeight();
+		final long now = SystemClock.uptimeMillis();
+		float x;
+		float y;
+		if (n == 0) {
+			mDownTime = now;
+			if ((gesture == TAP_NEXT) || (gesture == TAP_PREV)) {
+				int target = mGroup.getSelection() + (gesture == TAP_NEXT ? 1 : -1);
+				if ((target < 0) || (target >= mGroup.getChildCount())) {
+					// nothing to tap at this end, skip the gesture
+					return false;
+				}
+				View child = mGroup.getChildAt(target);
+				mDownX = (child.getLeft() + child.getRight()) / 2f;
+				mDownY = (child.getTop() + child.getBottom()) / 2f;
+			} else {
+				mDownX = (gesture == FLING_PREV) ? w * 0.2f : w * 0.8f;
+				mDownY = h * 0.5f;
+			}
+		}
+		if ((gesture == FLING_NEXT) || (gesture == FLING_PREV)) {
+			// quick moves of a tenth of the width per sample
+			float dx = w * 0.1f * n;
+			x = (gesture == FLING_NEXT) ? mDownX - dx : mDownX + dx;
+			y = mDownY;
+		} else if (gesture == DRAG) {
+			// a slow pan that comes to rest before lifting, so
+			// it exercises the move path without flinging
+			int moving = Math.min(n, DRAG_SAMPLES / 2);
+			x = mDownX - moving * 4;
+			y = mDownY + moving;
+		} else {
+			x = mDownX;
+			y = mDownY;
+		}
+		int action = (n == 0) ? MotionEvent.ACTION_DOWN
+				: (n == samples - 1) ? MotionEvent.ACTION_UP : MotionEvent.ACTION_MOVE;
+		MotionEvent ev = MotionEvent.obtain(mDownTime, now, action, x, y, 0);
+		mGroup.dispatchTouchEvent(ev);
+		ev.recycle();
+		return true;
+	}
+
+	private void finishRun(long durationMillis) {
+		mRunning = false;
+		try {
+			File file = writeResults(durationMillis);
+			Log.i(TAG, "benchmark results in " + file);
+			mStatus.setText("done, results in " + file);
+		} catch (IOException e) {
+			Log.e(TAG, "could not write benchmark results", e);
+			mStatus.setText("could not write results: " + e.getMessage());
+		} catch (JSONException e) {
+			Log.e(TAG, "could not build benchmark results", e);
+			mStatus.setText("could not build results: " + e.getMessage());
+		}
+	}
+
+	private File writeResults(long durationMillis) throws IOException, JSONException {
+		JSONObject results = new JSONObject();
+		results.put("device", Build.MODEL);
+		results.put("sdk", Build.VERSION.SDK_INT);
+
+		JSONObject config = new JSONObject();
+		config.put("children", mChildren);
+		config.put("complexity", mComplexity);
+		config.put("model", mModel);
+		config.put("rounds", mRounds);
+		config.put("gestures", SCRIPT.length * mRounds);
+		config.put("pacing", mPacing);
+		config.put("snapshots", mSnapshots);
+		results.put("config", config);
+
+		results.put("setupMillis", mSetupMillis);
+		results.put("durationMillis", durationMillis);
+		results.put("frames", mFrames.toJson());
+
+		LayoutMetrics.Snapshot m = mMetrics.snapshot();
+		JSONObject metrics = new JSONObject();
+		metrics.put("layoutPasses", m.layoutPasses);
+		metrics.put("measurePasses", m.measurePasses);
+		metrics.put("drawPasses", m.drawPasses);
+		metrics.put("modelCalls", m.modelCalls);
+		metrics.put("animations", m.animations);
+		metrics.put("framesDelivered", m.framesDelivered);
+		metrics.put("framesExpected", m.framesExpected);
+		metrics.put("jankyFrames", m.jankyFrames);
+		metrics.put("droppedFrames", m.droppedFrames);
+		metrics.put("stepTimeP50Micros", m.stepTimePercentileMicros(50));
+		metrics.put("stepTimeP99Micros", m.stepTimePercentileMicros(99));
+		metrics.put("measureTimeTotalMillis", m.measureTimeTotalNanos / 1000000.0);
+		metrics.put("drawTimeTotalMillis", m.drawTimeTotalNanos / 1000000.0);
+		results.put("metrics", metrics);
+
+		JSONObject memory = new JSONObject();
+		memory.put("javaHeapBefore", mJavaHeapBefore);
+		memory.put("javaHeapAfter", javaHeapUsed());
+		memory.put("nativeHeapBefore", mNativeHeapBefore);
+		memory.put("nativeHeapAfter", Debug.getNativeHeapAllocatedSize());
+		memory.put("groupRetainedBytes", mGroup.getMemoryReport().getTotalBytes());
+		results.put("memory", memory);
+
+		File file = new File(getFilesDir(), "benchmark-" + mModel + "-" + mComplexity
+				+ "-" + mChildren + "-" + System.currentTimeMillis() + ".json");
+		Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+		try {
+			out.write(results.toString(2));
+		} finally {
+			out.close();
+		}
+		return file;
+	}
+
+	private static long javaHeapUsed() {
+		Runtime runtime = Runtime.getRuntime();
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+
+	/**
+	 * Records the time between draws of the group.  Works back to
+	 * the oldest supported release, unlike a Choreographer callback.
+	 */
+	private static final class FrameRecorder implements ViewTreeObserver.OnPreDrawListener {
+		private long mLastNanos = -1;
+		private int mCount = 0;
+		private int[] mMicros = new int[1024];
+
+		void reset() {
+			mLastNanos = -1;
+			mCount = 0;
+		}
+
+		public boolean onPreDraw() {
+			long now = System.nanoTime();
+			if ((mLastNanos != -1) && (now - mLastNanos < IDLE_GAP_NANOS)) {
+				if (mCount == mMicros.length) {
+					int[] grown = new int[mCount * 2];
+					System.arraycopy(mMicros, 0, grown, 0, mCount);
+					mMicros = grown;
+				}
+				mMicros[mCount++] = (int) ((now - mLastNanos) / 1000);
+			}
+			mLastNanos = now;
+			return true;
+		}
+
+		JSONObject toJson() throws JSONException {
+			JSONObject frames = new JSONObject();
+			frames.put("count", mCount);
+			if (mCount == 0) {
+				return frames;
+			}
+			int[] sorted = new int[mCount];
+			System.arraycopy(mMicros, 0, sorted, 0, mCount);
+			Arrays.sort(sorted);
+			long total = 0;
+			int over16 = 0;
+			int over32 = 0;
+			for (int micros : sorted) {
+				total += micros;
+				if (micros > 16700) {
+					over16++;
+				}
+				if (micros > 33400) {
+					over32++;
+				}
+			}
+			frames.put("meanMillis", total / 1000.0 / mCount);
+			frames.put("p50Millis", sorted[percentileIndex(50)] / 1000.0);
+			frames.put("p90Millis", sorted[percentileIndex(90)] / 1000.0);
+			frames.put("p99Millis", sorted[percentileIndex(99)] / 1000.0);
+			frames.put("maxMillis", sorted[mCount - 1] / 1000.0);
+			frames.put("over16Millis", over16);
+			frames.put("over33Millis", over32);
+			return frames;
+		}
+
+		private int percentileIndex(int percentile) {
+			int i = (int) Math.ceil(mCount * percentile / 100.0) - 1;
+			return Math.max(0, Math.min(mCount - 1, i));
+		}
+	}
+}
@@ -0,0 +1,93 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.graphics.Bitmap;
+
+/**
+ * A least recently used cache of Bitmaps by child position, bounded
+ * by the number of bytes the bitmaps hold rather than by count.
+ */
+public final class BitmapCache {
+	private final LinkedHashMap<Integer, Bitmap> mMap =
+		new LinkedHashMap<Integer, Bitmap>(16, 0.75f, true);
+	private int mMaxBytes;
+	private int mBytes = 0;
+
+	public BitmapCache(int maxBytes) {
+		mMaxBytes = maxBytes;
+	}
+
+	public static int sizeOf(Bitmap bitmap) {
+		return bitmap.getRowBytes() * bitmap.getHeight();
+	}
+
+	public synchronized Bitmap get(int position) {
+		return mMap.get(position);
+	}
+
+	public synchronized boolean contains(int position) {
+		return mMap.containsKey(position);
+	}
+
+	public synchronized void put(int position, Bitmap bitmap) {
+		Bitmap old = mMap.put(position, bitmap);
+		if (old != null) {
+			mBytes -= sizeOf(old);
+		}
+		mBytes += sizeOf(bitmap);
+		trimToSize(mMaxBytes);
+	}
+
+	/**
+	 * drop the least recently used bitmaps until no more than
+	 * maxBytes are held
+	 */
+	public synchronized void trimToSize(int maxBytes) {
+		Iterator<Map.Entry<Integer, Bitmap>> it = mMap.entrySet().iterator();
+		while ((mBytes > maxBytes) && it.hasNext()) {
+			mBytes -= sizeOf(it.next().getValue());
+			it.remove();
+		}
+	}
+
+	public synchronized void setMaxBytes(int maxBytes) {
+		mMaxBytes = maxBytes;
+		trimToSize(maxBytes);
+	}
+
+	public synchronized int getMaxBytes() {
+		return mMaxBytes;
+	}
+
+	public synchronized void evictAll() {
+		mMap.clear();
+		mBytes = 0;
+	}
+
+	public synchronized int getBytes() {
+		return mBytes;
+	}
+
+	public synchronized int getCount() {
+		return mMap.size();
+	}
+}
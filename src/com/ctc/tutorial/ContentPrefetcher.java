@@ -0,0 +1,216 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import android.graphics.Bitmap;
+import android.os.Build;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Loads the content for children before they come on screen.  The
+ * DynamicLayoutViewGroup tells the prefetcher which positions are
+ * about to be visible, the ContentLoader decodes them on a pool of
+ * background threads sized to the device's cores, and the results
+ * are kept in a byte bounded BitmapCache and handed to the
+ * ContentListener on the UI thread.
+ *
+ * When the wanted positions change (the selection jumped) loads
+ * for positions that are no longer wanted are cancelled.
+ */
+public final class ContentPrefetcher {
+	private static final String TAG = "CTC";
+
+	/**
+	 * Decodes the content for a position.  Called on a background
+	 * thread, may return null if there is nothing to show.
+	 */
+	public interface ContentLoader {
+		public Bitmap loadContent(int position) throws Exception;
+	}
+
+	/**
+	 * Told on the UI thread when a position's content is ready
+	 */
+	public interface ContentListener {
+		public void onContentLoaded(int position, Bitmap bitmap);
+	}
+
+	private final ContentLoader mLoader;
+	private ContentListener mListener;
+	private final BitmapCache mCache;
+	private final ExecutorService mExecutor;
+	private final Handler mHandler;
+
+	// loads in flight by position, only touched on the UI thread
+	private final HashMap<Integer, Load> mPending = new HashMap<Integer, Load>();
+
+	public ContentPrefetcher(ContentLoader loader, int maxCacheBytes) {
+		mLoader = loader;
+		mCache = new BitmapCache(maxCacheBytes);
+		mHandler = new Handler(Looper.getMainLooper());
+
+		int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads,
+				1, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					int mCount = 0;
+
+					public Thread newThread(final Runnable r) {
+						Thread t = new Thread(new Runnable() {
+							public void run() {
+								// stay out of the UI thread's way
+								Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+								r.run();
+							}
+						}, "ContentPrefetcher #" + (++mCount));
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		// idle pools give their threads back
+		if (Build.VERSION.SDK_INT >= 9) {
+			executor.allowCoreThreadTimeOut(true);
+		}
+		mExecutor = executor;
+	}
+
+	public void setContentListener(ContentListener listener) {
+		mListener = listener;
+	}
+
+	public BitmapCache getCache() {
+		return mCache;
+	}
+
+	/**
+	 * the cached content for a position, or null
+	 */
+	public Bitmap get(int position) {
+		return mCache.get(position);
+	}
+
+	/**
+	 * Make the given positions the wanted set.  Loads for anything
+	 * else are cancelled and anything wanted that is neither cached
+	 * nor loading is queued, in the order given.  UI thread only.
+	 */
+	public void update(int[] positions, int count) {
+		Iterator<Map.Entry<Integer, Load>> it = mPending.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<Integer, Load> e = it.next();
+			if (!contains(positions, count, e.getKey())) {
+				e.getValue().mFuture.cancel(false);
+				it.remove();
+			}
+		}
+		for (int i = 0; i < count; i++) {
+			int position = positions[i];
+			if (!mPending.containsKey(position) && !mCache.contains(position)) {
+				Load load = new Load(position);
+				mPending.put(position, load);
+				load.mFuture = mExecutor.submit(load);
+			}
+		}
+	}
+
+	private static boolean contains(int[] a, int count, int value) {
+		for (int i = 0; i < count; i++) {
+			if (a[i] == value) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	public int getPendingCount() {
+		return mPending.size();
+	}
+
+	/**
+	 * cancel everything that is loading
+	 */
+	public void cancelAll() {
+		for (Load load : mPending.values()) {
+			load.mFuture.cancel(false);
+		}
+		mPending.clear();
+	}
+
+	/**
+	 * stop the background threads, the prefetcher can not be used
+	 * after this
+	 */
+	public void shutdown() {
+		cancelAll();
+		mExecutor.shutdownNow();
+	}
+
+	private final class Load implements Runnable {
+		final int mPosition;
+		Future<?> mFuture;
+
+		Load(int position) {
+			mPosition = position;
+		}
+
+		public void run() {
+			Bitmap bitmap = null;
+			try {
+				bitmap = mLoader.loadContent(mPosition);
+			} catch (Exception e) {
+				Log.w(TAG, "loading content for " + mPosition + " failed", e);
+			}
+			final Bitmap result = bitmap;
+			mHandler.post(new Runnable() {
+				public void run() {
+					delivered(mPosition, Load.this, result);
+				}
+			});
+		}
+	}
+
+	private void delivered(int position, Load load, Bitmap bitmap) {
+		if (mPending.get(position) != load) {
+			// no longer wanted, keep it anyway if it was loaded since
+			// the work is done and the cache is bounded
+			if (bitmap != null) {
+				mCache.put(position, bitmap);
+			}
+			return;
+		}
+		mPending.remove(position);
+		if (bitmap != null) {
+			mCache.put(position, bitmap);
+			if (mListener != null) {
+				mListener.onContentLoaded(position, bitmap);
+			}
+		}
+	}
+}
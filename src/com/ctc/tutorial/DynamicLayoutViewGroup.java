@@ -16,46 +16,119 @@
 
 package com.ctc.tutorial;
 
+import android.content.ComponentCallbacks;
+import android.content.ComponentCallbacks2;
 import android.content.Context;
+import android.content.res.Configuration;
 import android.graphics.Canvas;
 import android.graphics.LinearGradient;
 import android.graphics.Paint;
+import android.graphics.PointF;
 import android.graphics.Rect;
 import android.graphics.RectF;
 import android.graphics.Shader;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Looper;
+import android.os.MessageQueue;
 import android.os.Parcelable;
 import android.os.SystemClock;
 import android.util.AttributeSet;
 import android.util.Log;
 import android.view.View;
 import android.view.ViewGroup;
+import android.view.ViewParent;
 import android.view.MotionEvent;
 import android.view.VelocityTracker;
 import android.view.ViewConfiguration;
-import android.view.animation.OvershootInterpolator;
+import android.view.ViewStub;
 import android.view.animation.Interpolator;
-import java.util.HashMap;
 
+import com.ctc.tutorial.core.Bounds;
+import com.ctc.tutorial.core.DefaultBoundsModel;
+import com.ctc.tutorial.core.Easing;
+import com.ctc.tutorial.core.FrameClock;
+import com.ctc.tutorial.core.FramePacer;
+import com.ctc.tutorial.core.GestureRecognizer;
+import com.ctc.tutorial.core.LayoutEngine;
+
+/**
+ * A ViewGroup that positions its children with a LayoutModel and
+ * animates them when the selected child changes.
+ *
+ * The layout and animation math lives in the android independent
+ * com.ctc.tutorial.core.LayoutEngine, this class feeds it sizes,
+ * time and touches and applies the results to the child views.
+ */
 public final class DynamicLayoutViewGroup extends ViewGroup {
 
+	private static final String TAG = "CTC";
+
+	/**
+	 * Debug logging, off so the touch path builds no log strings
+	 */
+	private static final boolean DEBUG = false;
+
 	/**
 	 *  Velocity tracking for fling detection in touch events
 	 */
 	private VelocityTracker mVelocityTracker;
 
-	private int mTouchSlop;
-	private int mMinimumVelocity;
 	private int mMaximumVelocity;
 
 	private static final int INVALID_POINTER = -1;
 
 	private int mActivePointerId = INVALID_POINTER;
 
-	private float mLastMotionX;
-	private float mLastMotionY;
+	/**
+	 * the frame time the touch position is predicted for, one frame
+	 * after the newest move event
+	 */
+	private long mPredictionTime;
 
-	private boolean mIsBeingDragged = false;
+	/**
+	 * The axis the children are dragged along, SCROLL_AXIS_HORIZONTAL
+	 * or SCROLL_AXIS_VERTICAL.  Drags the other way are left to the
+	 * parents.
+	 */
+	private int mScrollAxis = SCROLL_AXIS_HORIZONTAL;
+
+	/**
+	 * Nested scrolling state (API 21 and up).  While dragging, the
+	 * motion along the scroll axis is offered to a nested scrolling
+	 * parent first.  If the release is mostly along an axis the
+	 * parent has taken motion on, the fling goes to the parent and
+	 * nothing is selected here.
+	 */
+	private boolean mNestedScrolling = false;
+	private boolean mNestedConsumedX = false;
+	private boolean mNestedConsumedY = false;
+	private float mNestedLastX;
+	private float mNestedLastY;
+	private final int[] mNestedConsumedDelta = new int[2];
+	private final int[] mNestedOffset = new int[2];
+
+	/**
+	 * the down time of the gesture startTracking() last saw, so the
+	 * down the intercept handled is not tracked twice
+	 */
+	private long mTrackedDownTime = -1;
+
+	/**
+	 * Decides between taps and flings, shared with the replay harness
+	 */
+	private GestureRecognizer mGestures;
+
+	/**
+	 * Where animation time comes from, the uptime clock unless a
+	 * test or replay installs its own
+	 */
+	private static final FrameClock UPTIME_CLOCK = new FrameClock() {
+		public long uptimeMillis() {
+			return SystemClock.uptimeMillis();
+		}
+	};
+	private FrameClock mClock = UPTIME_CLOCK;
 
 	/**
 	 * Background drawing support
@@ -64,19 +137,100 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	private Paint fullPaint;
 
 	/**
-	 * Variables used in controlling the animation
+	 * Selection events go out directly on the touch path
 	 */
-	long mLastDrawTime = -1;
-	long mStartDrawTime = -1;
+	public static final int DISPATCH_IMMEDIATE = 0;
 
-	int mAnimationDuration = 500;
+	/**
+	 * Selection changes and settles are held until the selection has
+	 * stayed settled for a moment, then posted with repeats coalesced.
+	 * Activations are posted after the frame showing them (the
+	 * default)
+	 */
+	public static final int DISPATCH_AFTER_FRAME = 1;
+
+	private final SelectionDispatcher mSelectionEvents = new SelectionDispatcher(this);
 
-	boolean mAnimating = false;
-	Interpolator mAnimationInterpolator = null;
+	/**
+	 * Optional instrumentation, null when disabled
+	 */
+	LayoutMetrics mMetrics = null;
+	private long mModelCallsRecorded = 0;
+	private boolean mFirstAnimationFrame = false;
 
-	HashMap<View, ViewHelper> helperList = new HashMap<View, ViewHelper>();
+	/**
+	 * Posted to run the next animation step.  One instance is
+	 * reused so a running animation allocates nothing per frame.
+	 */
+	private final Runnable mAnimationStep = new Runnable() {
+		public void run() {
+			layoutChildren();
+		}
+	};
+
+	/**
+	 * Optional shared scheduler that steps the animation instead
+	 * of this group posting its own steps, null when not used
+	 */
+	private FrameScheduler mScheduler = null;
+	private long mLastStepTime = -1;
+
+	private final FrameScheduler.Client mFrameClient = new FrameScheduler.Client() {
+		public boolean doFrame(long frameTime) {
+			if (!mEngine.isAnimating()) {
+				return false;
+			}
+			// at a lowered update rate skip every other frame
+			if ((mPacer != null) && (mLastStepTime != -1)
+					&& (frameTime - mLastStepTime < mPacer.getDelayMillis() + FRAME_MILLIS / 2)) {
+				return true;
+			}
+			stepAnimation(frameTime);
+			recordModelCalls();
+			// ask the engine again, a settle listener may have
+			// started the next animation while this client is still
+			// registered, and dropping it would leave that stuck
+			return mEngine.isAnimating();
+		}
+	};
+
+	/**
+	 * Optional content prefetching, null when not used.  Positions
+	 * within mPrefetchRange selections of the current one, and that
+	 * far again in the direction of travel, are predicted.
+	 */
+	private ContentPrefetcher mPrefetcher = null;
+	private int mPrefetchRange = 2;
+	private int[] mPrefetchPositions = new int[0];
+
+	/**
+	 * how far either side of a candidate selection to look for
+	 * children that would be on screen
+	 */
+	private static final int PREFETCH_SEARCH_RADIUS = 16;
+
+	/**
+	 * true while there may be ViewStub children left to inflate
+	 */
+	private boolean mHasStubs = false;
+
+	/**
+	 * how long each idle callback may spend inflating stubs
+	 */
+	private static final int IDLE_INFLATE_MILLIS = 4;
+
+	/**
+	 * Memory pressure callbacks from the application, registered
+	 * while attached on devices that have onTrimMemory
+	 */
+	private ComponentCallbacks mMemoryCallbacks = null;
+
+	/**
+	 * Optional adaptive frame pacing, null when disabled
+	 */
+	private FramePacer mPacer = null;
+	private static final int FRAME_MILLIS = 16;
 
-	ItemSelectedListener mSelectionListener=null;
 	/**
 	 * Hang on to the context 
 	 */
@@ -88,11 +242,34 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	 *   with the selected item centered and a bit larger
 	 */
 	LayoutModel mLayoutModel = new DefaultLayoutModel();
-	
+
+	/**
+	 * The engine tracks the selected item and does the layout
+	 * and animation math for the children
+	 */
+	final LayoutEngine mEngine = new LayoutEngine(LayoutModelAdapter.wrap(mLayoutModel));
+
+	private final Bounds mBounds = new Bounds();
+
+	/**
+	 * Optional per-orientation snapshots of the computed layout.  When
+	 * enabled they are saved with the instance state so that after a
+	 * rotation the layout can be reused instead of asking the model
+	 * for every Rect again.  Index 0 is portrait, 1 is landscape.
+	 */
+	private boolean mSnapshotsEnabled = false;
+	private LayoutSnapshot[] mSnapshots = new LayoutSnapshot[2];
+	private LayoutSnapshot mActiveSnapshot = null;
+
 	/**
-	 *  The index of the current "selected" item
-	 */ 	
-	private int _selected = 0;
+	 * while a snapshot is in use the model is not told about the
+	 * new size until it is actually asked for a Rect
+	 */
+	private boolean mModelSizePending = false;
+	private int mPendingWidth;
+	private int mPendingHeight;
+	private int mPendingOldWidth;
+	private int mPendingOldHeight;
 
 
 	/**
@@ -120,25 +297,342 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	 */
 	public void setLayoutModel( LayoutModel model ) {
 		mLayoutModel = model;
+		mEngine.setModel(LayoutModelAdapter.wrap(model));
+		// snapshots were computed by the old model
+		mActiveSnapshot = null;
+		mSnapshots[0] = null;
+		mSnapshots[1] = null;
+		ensureModelSize();
 		// layoutChildren();
 	}
 	
 	/**
 	 * set the animation interpolator to use when animating
-	 * view layout changes.  the default is OvershootInterpolator
+	 * view layout changes.  the default is an overshoot
 	 * for that nice settling in wiggle
 	 * @param interpolator
 	 */
 	public void setInterpolator( Interpolator interpolator ) {
-		mAnimationInterpolator = interpolator;
+		mEngine.setEasing(interpolator == null ? null : new InterpolatorEasing(interpolator));
+	}
+
+	/**
+	 * Adapts an android Interpolator to the core Easing
+	 */
+	private static final class InterpolatorEasing implements Easing {
+		private final Interpolator mInterpolator;
+
+		InterpolatorEasing(Interpolator interpolator) {
+			mInterpolator = interpolator;
+		}
+
+		public float ease(float t) {
+			return mInterpolator.getInterpolation(t);
+		}
 	}
 	
+	/**
+	 * set the clock used to time animations, null restores the
+	 * uptime clock
+	 * @param clock
+	 */
+	public void setAnimationClock(FrameClock clock) {
+		mClock = (clock == null) ? UPTIME_CLOCK : clock;
+	}
+
+	/**
+	 * Let a shared FrameScheduler step this group's animations, so
+	 * several groups on one screen are ticked from one callback per
+	 * frame.  Pass null to go back to the group posting its own
+	 * steps.
+	 * @param scheduler
+	 */
+	public void setFrameScheduler(FrameScheduler scheduler) {
+		if (mScheduler != null) {
+			mScheduler.unregister(mFrameClient);
+		}
+		removeCallbacks(mAnimationStep);
+		mScheduler = scheduler;
+		if (mEngine.isAnimating()) {
+			if (mScheduler != null) {
+				mScheduler.register(mFrameClient);
+			} else {
+				post(mAnimationStep);
+			}
+		}
+	}
+
+	/**
+	 * Prefetch child content for the items that are about to come
+	 * on screen.  After each selection change the layout model is
+	 * asked which positions are visible for the selections within
+	 * range either side of the new one (and range further in the
+	 * direction of travel) and those are handed to the prefetcher.
+	 * Other selections are only predicted when the model implements
+	 * StatelessModel, otherwise just the current one is prefetched.
+	 * @param prefetcher  null to stop prefetching
+	 * @param range       how many selections ahead to look
+	 */
+	public void setContentPrefetcher(ContentPrefetcher prefetcher, int range) {
+		if ((mPrefetcher != null) && (mPrefetcher != prefetcher)) {
+			mPrefetcher.cancelAll();
+		}
+		mPrefetcher = prefetcher;
+		mPrefetchRange = range;
+		prefetchAround(mEngine.getSelected(), 0);
+	}
+
+	public ContentPrefetcher getContentPrefetcher() {
+		return mPrefetcher;
+	}
+
+	/**
+	 * tell the prefetcher what will be visible around a selection
+	 * @param direction  which way the selection is moving, 0 if
+	 *                   not moving
+	 */
+	private void prefetchAround(int selected, int direction) {
+		if ((mPrefetcher == null) || (getWidth() == 0)) {
+			return;
+		}
+		int from = selected - mPrefetchRange;
+		int to = selected + mPrefetchRange;
+		if (direction > 0) {
+			to += mPrefetchRange;
+		} else if (direction < 0) {
+			from -= mPrefetchRange;
+		}
+		from = Math.max(from, 0);
+		to = Math.min(to, getChildCount() - 1);
+
+		int max = Math.min(getChildCount(), (to - from + 1) + 2 * PREFETCH_SEARCH_RADIUS);
+		if (mPrefetchPositions.length < max) {
+			mPrefetchPositions = new int[max];
+		}
+		// the current selection first so it loads first, then
+		// outwards.  Other selections can only be predicted when
+		// the model does not change as it is asked about them.
+		ensureModelSize();
+		int n = mEngine.collectVisible(selected, selected - PREFETCH_SEARCH_RADIUS,
+				selected + PREFETCH_SEARCH_RADIUS, mPrefetchPositions, 0);
+		final int range = mEngine.isModelStateless() ? to - from : 0;
+		for (int d = 1; d <= range; d++) {
+			int s = (direction >= 0) ? selected + d : selected - d;
+			if ((s >= from) && (s <= to)) {
+				n = mEngine.collectVisible(s, s - PREFETCH_SEARCH_RADIUS,
+						s + PREFETCH_SEARCH_RADIUS, mPrefetchPositions, n);
+			}
+			s = (direction >= 0) ? selected - d : selected + d;
+			if ((s >= from) && (s <= to)) {
+				n = mEngine.collectVisible(s, s - PREFETCH_SEARCH_RADIUS,
+						s + PREFETCH_SEARCH_RADIUS, mPrefetchPositions, n);
+			}
+		}
+		mPrefetcher.update(mPrefetchPositions, n);
+		recordModelCalls();
+	}
+
+	/**
+	 * Give memory back according to an onTrimMemory level.  Called
+	 * automatically on API 14 and up while the group is attached, and
+	 * can be called by the host on older devices.
+	 *
+	 * - RUNNING_MODERATE and up: the prefetch cache is halved
+	 * - RUNNING_CRITICAL and up: the prefetch cache is emptied, loads in
+	 *   flight are cancelled and the snapshot for the other orientation
+	 *   is dropped
+	 * - BACKGROUND and up: all snapshots are dropped and the engine and
+	 *   prefetch arrays are cut down to the current number of children
+	 *
+	 * @param level  one of the ComponentCallbacks2.TRIM_MEMORY_ values
+	 */
+	public void trimMemory(int level) {
+		final ContentPrefetcher prefetcher = mPrefetcher;
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_MODERATE && prefetcher != null) {
+			BitmapCache cache = prefetcher.getCache();
+			cache.trimToSize(cache.getBytes() / 2);
+		}
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_RUNNING_CRITICAL) {
+			if (prefetcher != null) {
+				prefetcher.cancelAll();
+				prefetcher.getCache().evictAll();
+			}
+			int keep = orientationOf(getWidth(), getHeight());
+			if (mSnapshots[1 - keep] != mActiveSnapshot) {
+				mSnapshots[1 - keep] = null;
+			}
+		}
+		if (level >= ComponentCallbacks2.TRIM_MEMORY_BACKGROUND) {
+			// a snapshot in use is still needed for the next layout
+			for (int i = 0; i < mSnapshots.length; i++) {
+				if (mSnapshots[i] != mActiveSnapshot) {
+					mSnapshots[i] = null;
+				}
+			}
+			mEngine.trimToCount();
+			mPrefetchPositions = new int[0];
+		}
+	}
+
+	/**
+	 * What each cache of this group is holding
+	 */
+	public MemoryReport getMemoryReport() {
+		MemoryReport report = new MemoryReport();
+		report.add("layout engine", mEngine.getCount(), mEngine.getRetainedBytes());
+		int snapshots = 0;
+		long snapshotBytes = 0;
+		for (LayoutSnapshot snapshot : mSnapshots) {
+			if (snapshot != null) {
+				snapshots++;
+				snapshotBytes += 4L * snapshot.rects.length;
+			}
+		}
+		report.add("layout snapshots", snapshots, snapshotBytes);
+		if (mPrefetcher != null) {
+			BitmapCache cache = mPrefetcher.getCache();
+			report.add("prefetch cache", cache.getCount(), cache.getBytes());
+			report.add("prefetch loads", mPrefetcher.getPendingCount(), 0);
+		}
+		report.add("prefetch positions", mPrefetchPositions.length, 4L * mPrefetchPositions.length);
+		return report;
+	}
+
+	/**
+	 * Forwards the application's memory callbacks, only created on
+	 * API 14 and up where ComponentCallbacks2 exists
+	 */
+	private static final class TrimCallbacks implements ComponentCallbacks2 {
+		private final DynamicLayoutViewGroup mGroup;
+
+		TrimCallbacks(DynamicLayoutViewGroup group) {
+			mGroup = group;
+		}
+
+		public void onTrimMemory(int level) {
+			mGroup.trimMemory(level);
+		}
+
+		public void onLowMemory() {
+			mGroup.trimMemory(ComponentCallbacks2.TRIM_MEMORY_COMPLETE);
+		}
+
+		public void onConfigurationChanged(Configuration newConfig) {
+		}
+	}
+
+	/**
+	 * Turn on adaptive pacing for low end devices.  The cost of each
+	 * animation step is watched and when frames are missed only the
+	 * visible children are animated, then the update rate is lowered.
+	 * @param adaptive
+	 */
+	public void setAdaptivePacing(boolean adaptive) {
+		if (adaptive) {
+			if (mPacer == null) {
+				mPacer = new FramePacer(FRAME_MILLIS);
+			}
+		} else {
+			mPacer = null;
+			if (mEngine.setAnimateVisibleOnly(false)) {
+				applyLayout();
+			}
+		}
+	}
+
 	/**
 	 * add a listener for selection events.  The listener gets called
-	 * when the selected view is tapped
+	 * when the selected view is tapped, delivered the same way as
+	 * onItemActivated
 	 */
 	public void setOnSelectionListener( ItemSelectedListener listener ) {
-		mSelectionListener = listener;
+		mSelectionEvents.setItemSelectedListener(listener);
+	}
+
+	/**
+	 * add a listener for selection changes, the end of the
+	 * animation to a new selection and taps on the selected view
+	 */
+	public void setOnSelectionEventListener(SelectionEventListener listener) {
+		mSelectionEvents.setListener(listener);
+	}
+
+	/**
+	 * choose when selection events reach the listeners
+	 * @param mode  DISPATCH_IMMEDIATE or DISPATCH_AFTER_FRAME
+	 */
+	public void setSelectionDispatchMode(int mode) {
+		mSelectionEvents.setAfterFrame(mode != DISPATCH_IMMEDIATE);
+	}
+
+	/**
+	 * choose the axis the children are dragged along.  Only drags
+	 * that way are taken from the children and offered to a nested
+	 * scrolling parent, a drag across it goes to the parents whole,
+	 * so a horizontal group can sit in a vertically scrolling one.
+	 * @param axis  SCROLL_AXIS_HORIZONTAL (the default) or
+	 *              SCROLL_AXIS_VERTICAL
+	 */
+	public void setScrollAxis(int axis) {
+		if ((axis != SCROLL_AXIS_HORIZONTAL) && (axis != SCROLL_AXIS_VERTICAL)) {
+			throw new IllegalArgumentException(
+					"scroll axis must be SCROLL_AXIS_HORIZONTAL or SCROLL_AXIS_VERTICAL");
+		}
+		if (mActivePointerId != INVALID_POINTER) {
+			// a drag already under way was judged on the old axis
+			endGesture();
+		}
+		mScrollAxis = axis;
+		mGestures.setScrollAxis((axis == SCROLL_AXIS_HORIZONTAL)
+				? GestureRecognizer.AXIS_X : GestureRecognizer.AXIS_Y);
+	}
+
+	public int getScrollAxis() {
+		return mScrollAxis;
+	}
+
+	/**
+	 * Install a LayoutMetrics to record frame timing, measure
+	 * and model call counts.  Pass null to turn recording off.
+	 * @param metrics
+	 */
+	public void setLayoutMetrics(LayoutMetrics metrics) {
+		mMetrics = metrics;
+		mModelCallsRecorded = mEngine.getModelCalls();
+	}
+
+	public LayoutMetrics getLayoutMetrics() {
+		return mMetrics;
+	}
+
+	/**
+	 * pass the model calls made by the engine since the last
+	 * time on to the metrics
+	 */
+	private void recordModelCalls() {
+		if (mMetrics != null) {
+			long calls = mEngine.getModelCalls();
+			mMetrics.recordModelCalls(calls - mModelCallsRecorded);
+			mModelCallsRecorded = calls;
+		}
+	}
+
+	/**
+	 * Enable saving a snapshot of the computed layout for each
+	 * orientation with the instance state.  After a configuration
+	 * change a matching snapshot is used for the first layout so the
+	 * model does not have to recompute every Rect.  Only useful when
+	 * the model is a pure function of size and selection.
+	 * @param enabled
+	 */
+	public void setLayoutSnapshotsEnabled(boolean enabled) {
+		mSnapshotsEnabled = enabled;
+		if (!enabled) {
+			mActiveSnapshot = null;
+			mSnapshots[0] = null;
+			mSnapshots[1] = null;
+			ensureModelSize();
+		}
 	}
 
 	/**
@@ -150,7 +644,11 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 		Parcelable superState = bundle.getParcelable("superState");
 		super.onRestoreInstanceState(superState);
 
-		_selected = bundle.getInt("selected");
+		mEngine.setSelected(bundle.getInt("selected"));
+		if (mSnapshotsEnabled) {
+			mSnapshots[0] = LayoutSnapshot.readFrom(bundle, "snapshotPortrait");
+			mSnapshots[1] = LayoutSnapshot.readFrom(bundle, "snapshotLandscape");
+		}
 	}
 	
 	/**
@@ -163,13 +661,82 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 
 		Bundle state = new Bundle();
 		state.putParcelable("superState", superState);
-		state.putInt("selected", _selected); 
+		state.putInt("selected", mEngine.getSelected()); 
+		if (mSnapshotsEnabled) {
+			if (mSnapshots[0] != null) {
+				mSnapshots[0].writeTo(state, "snapshotPortrait");
+			}
+			if (mSnapshots[1] != null) {
+				mSnapshots[1].writeTo(state, "snapshotLandscape");
+			}
+		}
 		return state;
 	}
 
+	private static int orientationOf(int width, int height) {
+		return (height > width) ? 0 : 1;
+	}
+
+	/**
+	 * Use the saved snapshot for this size if it matches the current
+	 * selection and children, otherwise fall back to the model
+	 */
+	private void activateSnapshot(int width, int height) {
+		mActiveSnapshot = null;
+		if (mSnapshotsEnabled) {
+			LayoutSnapshot snapshot = mSnapshots[orientationOf(width, height)];
+			if ((snapshot != null)
+					&& snapshot.matches(width, height, mEngine.getSelected(), getChildCount())) {
+				mActiveSnapshot = snapshot;
+			}
+		}
+	}
+
+	/**
+	 * pass on a size change that was held back while a snapshot
+	 * was in use
+	 */
+	private void ensureModelSize() {
+		if (mModelSizePending) {
+			mModelSizePending = false;
+			mEngine.sizeChanged(mPendingWidth, mPendingHeight,
+					mPendingOldWidth, mPendingOldHeight);
+		}
+	}
+
+	/**
+	 * The layout bounds for a child at the current selection, from
+	 * the active snapshot if there is one or else from the model
+	 */
+	private void layoutBoundsFor(int pos, Bounds out) {
+		if (mActiveSnapshot != null) {
+			mActiveSnapshot.get(pos, out);
+		} else if (mEngine.isAnimating()) {
+			// already asked the model when the animation started
+			mEngine.getTargetBounds(pos, out);
+		} else {
+			ensureModelSize();
+			mEngine.getLayoutBounds(pos, out);
+		}
+	}
+
+	/**
+	 * record the final (non animating) layout for this orientation
+	 */
+	private void captureSnapshot() {
+		int width = getWidth();
+		int height = getHeight();
+		int o = orientationOf(width, height);
+		if (mSnapshots[o] == null) {
+			mSnapshots[o] = new LayoutSnapshot();
+		}
+		mSnapshots[o].capture(width, height, mEngine.getSelected(),
+				mEngine.getCount(), mEngine.getCurrentRects());
+	}
+
 	/**
 	 * Setup for the view. Grab some configuration values for 
-	 * touch events and set the default interpolator.
+	 * touch events.
 	 * @param context
 	 */
 	private void init(Context context) {
@@ -178,11 +745,17 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 
 		final ViewConfiguration configuration = ViewConfiguration
 				.get(getContext());
-		mTouchSlop = configuration.getScaledTouchSlop();
-		mMinimumVelocity = configuration.getScaledMinimumFlingVelocity();
 		mMaximumVelocity = configuration.getScaledMaximumFlingVelocity();
+		mGestures = new GestureRecognizer(configuration.getScaledTouchSlop(),
+				configuration.getScaledMinimumFlingVelocity());
+
+		// the engine decides which child is on top
+		setChildrenDrawingOrderEnabled(true);
 
-		mAnimationInterpolator = new OvershootInterpolator();
+		if (Build.VERSION.SDK_INT >= 21) {
+			// offer drags to a scrolling parent first
+			setNestedScrollingEnabled(true);
+		}
 	}
 
 	/**
@@ -200,91 +773,374 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	}
 
 	/**
-	 * Layout the children
+	 * Layout the children
+	 */
+	@Override
+	protected void onLayout(boolean changed, int left, int top, int right,
+			int bottom) {
+		layoutChildren();
+	}
+
+
+	
+	/**
+	 * To lay out the children, the engine calls the installed
+	 * LayoutModel for each view.  The model will return a Rect for
+	 * positioning of the view.  
+	 * 
+	 * Here we also handle animation between layout positions
+	 */
+	protected void layoutChildren() {
+		final LayoutMetrics metrics = mMetrics;
+		if (metrics != null) {
+			metrics.recordLayout();
+		}
+		mEngine.setCount(getChildCount());
+
+		// Is the view animating to new layout positions?
+		if (mEngine.isAnimating()) {
+			if (mScheduler != null) {
+				// the shared scheduler steps the animation, here we
+				// only put the children where the engine has them
+				applyLayout();
+				mScheduler.register(mFrameClient);
+			} else if (stepAnimation(mClock.uptimeMillis())) {
+				// post event to do the layout again
+				long delay = (mPacer != null) ? mPacer.getDelayMillis() : 0;
+				if (delay > 0) {
+					postDelayed(mAnimationStep, delay);
+				} else {
+					post(mAnimationStep);
+				}
+			}
+		} else {
+			// when no animation is happening, we simply 
+			// Layout children based on the values provided by
+			// the LayoutModel.  This is also the start position
+			// for the next time we want to animate
+			if (mActiveSnapshot != null) {
+				mEngine.settle(mActiveSnapshot.rects);
+			} else {
+				ensureModelSize();
+				mEngine.settle();
+				if (mSnapshotsEnabled) {
+					captureSnapshot();
+				}
+			}
+			inflateVisibleStubs(false);
+			applyLayout();
+		}
+		recordModelCalls();
+	}
+
+	/**
+	 * Children declared as ViewStubs are deferred.  Only the stubs
+	 * that are on screen are inflated during layout, the rest are
+	 * inflated in short batches when the UI thread is idle after the
+	 * first draw.  This keeps a large menu from inflating every
+	 * child before its first frame.  Stubs added with addView() are
+	 * deferred the same way.
+	 *
+	 * @param targets  check the positions the children are animating
+	 *                 to rather than where they are now
+	 * @return true if any stub was inflated
+	 */
+	private boolean inflateVisibleStubs(boolean targets) {
+		if (!mHasStubs) {
+			return false;
+		}
+		final Bounds b = mBounds;
+		final int width = getWidth();
+		final int height = getHeight();
+		boolean inflated = false;
+		boolean stubsLeft = false;
+		final int count = getChildCount();
+		for (int i = 0; i < count; i++) {
+			View v = getChildAt(i);
+			if (v instanceof ViewStub) {
+				if (targets) {
+					mEngine.getTargetBounds(i, b);
+				} else {
+					b.set(mEngine.getLeft(i), mEngine.getTop(i),
+							mEngine.getRight(i), mEngine.getBottom(i));
+				}
+				if ((b.left < width) && (b.right > 0) && (b.top < height) && (b.bottom > 0)) {
+					// the inflated view takes the stub's place, measure
+					// it straight away since it missed the measure pass
+					((ViewStub) v).inflate();
+					measureChildAt(i, b);
+					inflated = true;
+				} else {
+					stubsLeft = true;
+				}
+			}
+		}
+		mHasStubs = stubsLeft;
+		return inflated;
+	}
+
+	/**
+	 * Inflates the remaining stubs for up to IDLE_INFLATE_MILLIS per
+	 * idle callback (at least one), with a single layout pass for
+	 * the whole batch
+	 */
+	private final MessageQueue.IdleHandler mIdleInflater = new MessageQueue.IdleHandler() {
+		public boolean queueIdle() {
+			final long end = SystemClock.uptimeMillis() + IDLE_INFLATE_MILLIS;
+			final int count = getChildCount();
+			boolean inflated = false;
+			boolean stubsLeft = false;
+			for (int i = 0; i < count; i++) {
+				View v = getChildAt(i);
+				if (v instanceof ViewStub) {
+					if (inflated && (SystemClock.uptimeMillis() >= end)) {
+						stubsLeft = true;
+						break;
+					}
+					// the inflated view takes the stub's place, so i
+					// stays valid
+					((ViewStub) v).inflate();
+					inflated = true;
+				}
+			}
+			if (inflated) {
+				requestLayout();
+			}
+			if (!stubsLeft) {
+				mHasStubs = false;
+				mIdleInflaterQueued = false;
+			}
+			return stubsLeft;
+		}
+	};
+	private boolean mIdleInflaterQueued = false;
+
+	/**
+	 * start inflating the deferred children once the UI thread
+	 * has nothing better to do
+	 */
+	private void queueIdleInflation() {
+		if (mHasStubs && !mIdleInflaterQueued) {
+			mIdleInflaterQueued = true;
+			Looper.myQueue().addIdleHandler(mIdleInflater);
+		}
+	}
+
+	@Override
+	public void addView(View child, int index, ViewGroup.LayoutParams params) {
+		// every addView() ends up here, including the ones made
+		// while inflating the group from xml
+		if (child instanceof ViewStub) {
+			mHasStubs = true;
+		}
+		super.addView(child, index, params);
+	}
+
+	/**
+	 * Run one animation step at the given time and move the children
+	 * @return true if the animation needs more steps
+	 */
+	private boolean stepAnimation(long now) {
+		final LayoutMetrics metrics = mMetrics;
+		final FramePacer pacer = mPacer;
+		if (mFirstAnimationFrame) {
+			mFirstAnimationFrame = false;
+			if (metrics != null) {
+				metrics.animationStarted();
+			}
+			if (pacer != null) {
+				pacer.start();
+			}
+		}
+		// when pacing has cut the work down only the visible
+		// children are moved, the rest are snapped into place
+		// once when that is switched on
+		boolean applyAll = (pacer != null)
+				&& mEngine.setAnimateVisibleOnly(pacer.isVisibleOnly());
+
+		// the engine determines where to position each view based
+		// on how much of the animation time has passed, between
+		// the start position and requested end position.  The
+		// easing is also applied there.
+		final boolean timed = (metrics != null) || (pacer != null);
+		// the delay the pacer asked for before this step, steps that
+		// far apart are on time
+		final long pacedMillis = (pacer != null) ? pacer.getDelayMillis() : 0;
+		long stepStart = timed ? System.nanoTime() : 0;
+		boolean more = mEngine.step(now);
+		if (more && !applyAll) {
+			applyAnimatedLayout();
+		} else {
+			applyLayout();
+		}
+		mLastStepTime = now;
+		long stepNanos = timed ? System.nanoTime() - stepStart : 0;
+		if (metrics != null) {
+			// the final settling step is a delivered frame too
+			metrics.recordFrame(stepStart, stepNanos, pacedMillis);
+		}
+		if (more) {
+			if (pacer != null) {
+				pacer.frame(now, stepNanos);
+			}
+		} else {
+			// the animation is over, nothing more is scheduled so
+			// an idle group costs no callbacks or wakeups.
+			// the animation duration is passed and the engine
+			// has set the final locations
+			if (metrics != null) {
+				metrics.animationFinished(mEngine.getDuration());
+			}
+			if (mSnapshotsEnabled) {
+				captureSnapshot();
+			}
+			mSelectionEvents.selectionSettled(mEngine.getSelected());
+		}
+		return more;
+	}
+
+	/**
+	 * move every child to the position the engine has for it
+	 */
+	private void applyLayout() {
+		final int count = getChildCount();
+		boolean moved = false;
+		for (int i = 0; i < count; i++) {
+			moved |= applyChild(i);
+		}
+		if (moved) {
+			invalidate();
+		}
+	}
+
+	/**
+	 * move only the children the engine animated this step
 	 */
-	@Override
-	protected void onLayout(boolean changed, int left, int top, int right,
-			int bottom) {
-		layoutChildren();
+	private void applyAnimatedLayout() {
+		final LayoutEngine engine = mEngine;
+		final int count = engine.getAnimatedCount();
+		// children removed since the engine last counted them are
+		// skipped, the next layout pass catches the engine up
+		final int childCount = getChildCount();
+		boolean moved = false;
+		for (int k = 0; k < count; k++) {
+			final int index = engine.getAnimatedChild(k);
+			if (index < childCount) {
+				moved |= applyChild(index);
+			}
+		}
+		if (moved) {
+			invalidate();
+		}
 	}
 
-
-	
 	/**
-	 * To lay out the children, call the installed LayoutModel for
-	 * each view.  The model will return a Rect for positioning of
-	 * the view.  
-	 * 
-	 * Here we also handle animation between layout positions
+	 * Put one child where the engine has it.  Size and position are
+	 * applied separately: a child that keeps its size is only
+	 * offset, which skips laying out its content again, and only a
+	 * real size change goes through layout().
+	 * @return true if the child was offset, the group then needs
+	 *         an invalidate as offsetting does not always do that
 	 */
-	protected void layoutChildren() {
-		int i;
-		
-		Rect r;
+	private boolean applyChild(int i) {
+		final LayoutEngine engine = mEngine;
+		final View child = getChildAt(i);
+		final int left = engine.getLeft(i);
+		final int top = engine.getTop(i);
+		final int right = engine.getRight(i);
+		final int bottom = engine.getBottom(i);
+		if (child.isLayoutRequested()
+				|| (child.getWidth() != right - left)
+				|| (child.getHeight() != bottom - top)) {
+			child.layout(left, top, right, bottom);
+			return false;
+		}
+		final int dx = left - child.getLeft();
+		final int dy = top - child.getTop();
+		if (dx != 0) {
+			child.offsetLeftAndRight(dx);
+		}
+		if (dy != 0) {
+			child.offsetTopAndBottom(dy);
+		}
+		return (dx != 0) || (dy != 0);
+	}
 
-		// Is the view animating to new layout positions?
-		if (mAnimating) {
-			if (mStartDrawTime == -1) {
-				mStartDrawTime = SystemClock.uptimeMillis();
-			}
-			// here we are moving the views and forcing layout
-			// to update the child view locations
-			// get current time
-			long timenow = SystemClock.uptimeMillis();
-			// if animation time not expired
-			if ((timenow - mStartDrawTime) < mAnimationDuration) {
-				// determine time as %
-				float tdiff = (float) timenow - (float) mStartDrawTime;
-				float timeslice = mStartDrawTime == -1 ? .05f : tdiff
-						/ (float) mAnimationDuration;
-				// use layout helper to layout views
-				// the layoutAtTime method will determine where to
-				// position the view based on % between the start position
-				// and requested end position.  timeslice is a % value from
-				// 0 to 1 depending on how much animation time remains.  
-				// the view helper is also where the interpolator is
-				// called.
-				for (ViewHelper vh : helperList.values()) {
-					vh.layoutAtTime(timeslice);
-				}
-				mLastDrawTime = SystemClock.uptimeMillis();
-				// post event to do the layout again
-				post(new Runnable() {
-					public void run() {
-						layoutChildren();
-					}
-				});
+	@Override
+	protected void onAttachedToWindow() {
+		super.onAttachedToWindow();
+		if ((Build.VERSION.SDK_INT >= 14) && (mMemoryCallbacks == null)) {
+			mMemoryCallbacks = new TrimCallbacks(this);
+			getContext().getApplicationContext().registerComponentCallbacks(mMemoryCallbacks);
+		}
+		mSelectionEvents.resume();
+		// pick up an animation that was cut off by a detach
+		if (mEngine.isAnimating()) {
+			if (mScheduler != null) {
+				mScheduler.register(mFrameClient);
 			} else {
-				// the animation duration is passed
-				// set mAnimation false
-				mAnimating = false;
-				mLastDrawTime = -1;
-				mStartDrawTime = -1;
-				// and call layoutChildren to set final locations using
-				// non animation branch of layout
-				layoutChildren();
-			}
-		} else {
-			// when no animation is happening, we simply 
-			// Layout children based on the values provided by
-			// the LayoutModel
-			View v;
-			ViewHelper vh;
-			
-			for (i = 0; i < getChildCount(); i++) {
-				v = getChildAt(i);
-				r = mLayoutModel.getLayoutRect(i,_selected);
-				v.layout(r.left, r.top, r.right,r.bottom);
-				// also, store this position as the start position
-				// for the next time we want to animate
-				vh = getViewHelper(v, i);				
-				vh.setStartPosition(r.left, r.top, r.right,r.bottom);				
+				post(mAnimationStep);
 			}
 		}
 	}
 
+	@Override
+	protected void onDetachedFromWindow() {
+		super.onDetachedFromWindow();
+		// make sure a pending animation step does not run (or keep
+		// the group awake) while it is off screen
+		removeCallbacks(mAnimationStep);
+		if (mScheduler != null) {
+			mScheduler.unregister(mFrameClient);
+		}
+		// hold the events while off screen, they are posted again
+		// on attach rather than delivered from inside the detach
+		mSelectionEvents.cancel();
+		if (mPrefetcher != null) {
+			mPrefetcher.cancelAll();
+		}
+		if (mIdleInflaterQueued) {
+			mIdleInflaterQueued = false;
+			Looper.myQueue().removeIdleHandler(mIdleInflater);
+		}
+		if (mMemoryCallbacks != null) {
+			getContext().getApplicationContext().unregisterComponentCallbacks(mMemoryCallbacks);
+			mMemoryCallbacks = null;
+		}
+	}
+
+	/**
+	 * measure each child EXACTLY to its layout Rect
+	 */
+	private void measureChildren() {
+		final Bounds b = mBounds;
+		final int count = getChildCount();
+		for (int i = 0; i < count; i++) {
+			// use the layout model to determine the size and height
+			layoutBoundsFor(i, b);
+			measureChildAt(i, b);
+		}
+	}
+
+	private void measureChildAt(int i, Bounds b) {
+		final View child = getChildAt(i);
+		if (!child.isLayoutRequested() && (child.getMeasuredWidth() == b.width())
+				&& (child.getMeasuredHeight() == b.height())) {
+			// already measured to this size, nothing inside it
+			// asked to be measured again
+			return;
+		}
+		final int childWidthMeasureSpec = MeasureSpec.makeMeasureSpec(b.width(),
+				MeasureSpec.EXACTLY);
+		final int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(b.height(),
+				MeasureSpec.EXACTLY);
+
+		child.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+	}
+
 	@Override
 	protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+		final long measureStart = (mMetrics != null) ? System.nanoTime() : 0;
 		super.onMeasure(widthMeasureSpec, heightMeasureSpec);
 
 		final int widthMode = MeasureSpec.getMode(widthMeasureSpec);
@@ -299,24 +1155,22 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 					"This ViewGroup can only be used in EXACTLY mode.");
 		}
 		
+		mEngine.setCount(getChildCount());
+		activateSnapshot(MeasureSpec.getSize(widthMeasureSpec),
+				MeasureSpec.getSize(heightMeasureSpec));
+
 		// Measure out the children 
-		final int count = getChildCount();
-		for (int i = 0; i < count; i++) {
-			View v = getChildAt(i);
-			// use the layout model to determine the size and height
-			Rect r = mLayoutModel.getLayoutRect(i, _selected);
-			final int childWidthMeasureSpec = MeasureSpec.makeMeasureSpec(r.right-r.left,
-					MeasureSpec.EXACTLY);
-			final int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(r.bottom-r.top,
-					MeasureSpec.EXACTLY);
+		measureChildren();
 
-			v.measure(childWidthMeasureSpec, childHeightMeasureSpec);
+		if (mMetrics != null) {
+			recordModelCalls();
+			mMetrics.recordMeasure(System.nanoTime() - measureStart);
 		}
-
 	}
 
 	@Override
 	protected void dispatchDraw(Canvas canvas) {
+		final long drawStart = (mMetrics != null) ? System.nanoTime() : 0;
 		// Here is where you would draw custom background bits
 		// for the demo I just draw a shaded gradient unless there
 		// is a drawable set as the background in the XML file
@@ -334,19 +1188,110 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 		 
 		// once the background is drawn then dispatch to children
 		final long drawingTime = getDrawingTime();
-		// for now we just draw all of our children
+		// for now we just draw all of our children, in the order
+		// the engine worked out for the selection (selected on top)
 		// Could be optimized to draw only visible children
 		final int count = getChildCount();
 		for (int i = 0; i < count; i++) {
-			drawChild(canvas, getChildAt(i), drawingTime);
+			drawChild(canvas, getChildAt(getChildDrawingOrder(count, i)), drawingTime);
+		}
+
+		if (mMetrics != null) {
+			mMetrics.recordDraw(System.nanoTime() - drawStart);
+		}
+
+		// the first frame is out, the deferred children and any
+		// held selection events can follow
+		queueIdleInflation();
+		mSelectionEvents.frameDrawn();
+	}
+
+	/**
+	 * Draw (and hit test) in the engine's z-order
+	 */
+	@Override
+	protected int getChildDrawingOrder(int childCount, int i) {
+		if (childCount != mEngine.getCount()) {
+			return i;
 		}
+		return mEngine.getDrawingChild(i);
 	}
 
 	@Override
 	protected void onSizeChanged(int width, int height, int oldw, int oldh) {
 		// notify the layout model that the size of the parent
-		// has changed.
-		mLayoutModel.onSizeChanged(width, height, oldw, oldh);
+		// has changed.  If a saved snapshot covers this size the
+		// model is told later, the first time a Rect is needed
+		activateSnapshot(width, height);
+		if (mActiveSnapshot != null) {
+			mModelSizePending = true;
+			mPendingWidth = width;
+			mPendingHeight = height;
+			mPendingOldWidth = oldw;
+			mPendingOldHeight = oldh;
+		} else {
+			mModelSizePending = false;
+			mEngine.sizeChanged(width, height, oldw, oldh);
+		}
+		prefetchAround(mEngine.getSelected(), 0);
+	}
+
+	/**
+	 * Watch the touches going to the children and take the stream
+	 * over only once it turns into a drag, so interactive children
+	 * still get their taps.  Until then only the cheap position
+	 * tracking runs here; the VelocityTracker is fed from the moment
+	 * the stream is claimed.
+	 */
+	@Override
+	public boolean onInterceptTouchEvent(MotionEvent ev) {
+		final int action = ev.getAction();
+		if (((action & MotionEvent.ACTION_MASK) == MotionEvent.ACTION_MOVE)
+				&& mGestures.isDragging()) {
+			// already claimed, nothing more to decide
+			return true;
+		}
+
+		switch (action & MotionEvent.ACTION_MASK) {
+		case MotionEvent.ACTION_DOWN:
+			startTracking(ev);
+			break;
+		case MotionEvent.ACTION_MOVE:
+			if (mActivePointerId == INVALID_POINTER) {
+				break;
+			}
+			if (trackMove(ev)) {
+				// past the touch slop, the rest of the gesture is ours
+				if (mVelocityTracker == null) {
+					mVelocityTracker = VelocityTracker.obtain();
+				}
+				mVelocityTracker.addMovement(ev);
+				claimGesture();
+				return true;
+			}
+			break;
+		case MotionEvent.ACTION_UP:
+		case MotionEvent.ACTION_CANCEL:
+			// a child had the whole gesture
+			endGesture();
+			break;
+		case MotionEvent.ACTION_POINTER_UP:
+			onSecondaryPointerUp(ev);
+			break;
+		}
+		return false;
+	}
+
+	/**
+	 * A child does not want its touches taken away, so forget the
+	 * gesture being watched
+	 */
+	@Override
+	public void requestDisallowInterceptTouchEvent(boolean disallowIntercept) {
+		if (disallowIntercept) {
+			endGesture();
+		}
+		super.requestDisallowInterceptTouchEvent(disallowIntercept);
 	}
 
 	/**
@@ -359,7 +1304,9 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 		if (ev.getAction() == MotionEvent.ACTION_DOWN && ev.getEdgeFlags() != 0) {
 			// Don't handle edge touches immediately -- they may actually belong
 			// to one of our
-			// descendants.
+			// descendants.  No more of this gesture comes here, so
+			// drop what the intercept started for it.
+			endGesture();
 			return false;
 		}
 
@@ -372,89 +1319,57 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 
 		switch (action & MotionEvent.ACTION_MASK) {
 		case MotionEvent.ACTION_DOWN: {
-			final float x = ev.getX();
-			final float y = ev.getY();
-
-			// Remember where the motion event started
-			mLastMotionX = x;
-			mLastMotionY = y;
-			mActivePointerId = ev.getPointerId(0);
+			// Remember where the motion event started, unless the
+			// intercept already did for this same down
+			if ((mActivePointerId == INVALID_POINTER)
+					|| (ev.getDownTime() != mTrackedDownTime)) {
+				startTracking(ev);
+			}
 			break;
 		}
 		case MotionEvent.ACTION_MOVE:
-		
+			if (mActivePointerId == INVALID_POINTER) {
+				break;
+			}
 			// Scroll to follow the motion event
-			final int activePointerIndex = ev
-					.findPointerIndex(mActivePointerId);
-	
-			final float x = ev.getX(activePointerIndex);
-			final int xDiff = (int) Math.abs(mLastMotionX - x);
-			final float y = ev.getY(activePointerIndex);
-			final int yDiff = (int) Math.abs(mLastMotionY - y);
-
-			// only start a drag if enough motion has occurred
-			if (!mIsBeingDragged) {
-				if ((xDiff > mTouchSlop) || (yDiff > mTouchSlop)) {
-					mIsBeingDragged = true;
-				}
-			} else {
-				// This demo version does not attempt to scroll to
-				// track the active pointer.  Hint.  This is where you
-				// would implement that functionality if you so desired.
-			    mLastMotionX = x;
+			final boolean wasDragging = mGestures.isDragging();
+			if (trackMove(ev) && !wasDragging) {
+				claimGesture();
 			}
-			
 			break;
-		case MotionEvent.ACTION_UP:
-			if (mIsBeingDragged) {
+		case MotionEvent.ACTION_UP: {
+			float xVelocity = 0;
+			float yVelocity = 0;
+			if (mGestures.isDragging()) {
 				final VelocityTracker velocityTracker = mVelocityTracker;
 				velocityTracker.computeCurrentVelocity(1000, mMaximumVelocity);
-				
-				// for now we are allowing a vertical or horizontal
-				// fling to cause action.  One could imagine adding
-				// a setting (possible from the LayoutModel)
-				// to restrict this to horizontal
-				// or vertical depending on need
-				int xVelocity = (int) velocityTracker.getXVelocity();
-				int yVelocity = (int) velocityTracker.getYVelocity();
-
-				if (Math.abs(xVelocity) > Math.abs(yVelocity)) {
-					// horizontal fling
-					if ((Math.abs(xVelocity) > mMinimumVelocity)) {
-						flingX(-xVelocity);
-					}
-				} else {
-					// vertical fling
-					if ((Math.abs(yVelocity) > mMinimumVelocity)) {
-						flingY(-yVelocity);
-					}
-				}
-
-				mActivePointerId = INVALID_POINTER;
-				mIsBeingDragged = false;
-
-				if (mVelocityTracker != null) {
-					mVelocityTracker.recycle();
-					mVelocityTracker = null;
+				xVelocity = velocityTracker.getXVelocity();
+				yVelocity = velocityTracker.getYVelocity();
+			}
+			// a tap selects or activates the child under it, a
+			// fling moves the selection by one, see release()
+			mEngine.setCount(getChildCount());
+			switch (mGestures.release(xVelocity, yVelocity,
+					mNestedConsumedX, mNestedConsumedY, mEngine)) {
+			case GestureRecognizer.RELEASE_SELECT:
+				moveTo(mGestures.getReleaseTarget());
+				break;
+			case GestureRecognizer.RELEASE_ACTIVATE:
+				mSelectionEvents.itemActivated(mGestures.getReleaseTarget());
+				break;
+			case GestureRecognizer.RELEASE_PARENT_FLING:
+				// the parent scrolled along the release direction,
+				// let it have the fling too
+				if (!dispatchNestedPreFling(-xVelocity, -yVelocity)) {
+					dispatchNestedFling(-xVelocity, -yVelocity, false);
 				}
-
-			} else {
-				// this was a non-drag tap and release
-				// use this to determine which entry was tapped
-				// and make it the selected view or do an action
-				// if the selected view is being tapped
-				findAndSelectViewAt((int) mLastMotionX, (int) mLastMotionY);
+				break;
 			}
+			endGesture();
 			break;
+		}
 		case MotionEvent.ACTION_CANCEL:
-			if (mIsBeingDragged) {
-				mActivePointerId = INVALID_POINTER;
-				mIsBeingDragged = false;
-				if (mVelocityTracker != null) {
-					mVelocityTracker.recycle();
-					mVelocityTracker = null;
-				}
-			}
+			endGesture();
 			break;
 		case MotionEvent.ACTION_POINTER_UP:
 			onSecondaryPointerUp(ev);
@@ -463,6 +1378,131 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 		return true;
 	}
 
+	/**
+	 * a new gesture, shared by the intercept and touch paths
+	 */
+	private void startTracking(MotionEvent ev) {
+		mTrackedDownTime = ev.getDownTime();
+		mGestures.down(ev.getEventTime(), ev.getX(), ev.getY());
+		mActivePointerId = ev.getPointerId(0);
+		mPredictionTime = ev.getEventTime() + FRAME_MILLIS;
+		mNestedConsumedX = false;
+		mNestedConsumedY = false;
+		mNestedLastX = ev.getX();
+		mNestedLastY = ev.getY();
+		mSelectionEvents.gestureStarted();
+		if (Build.VERSION.SDK_INT >= 21) {
+			mNestedScrolling = startNestedScroll(mScrollAxis);
+		}
+	}
+
+	/**
+	 * Feed a move, with its batched history, to the gesture tracking
+	 * and, while dragging, to a nested scrolling parent.
+	 * @return true if the gesture is a drag
+	 */
+	private boolean trackMove(MotionEvent ev) {
+		final int activePointerIndex = ev
+				.findPointerIndex(mActivePointerId);
+		if (activePointerIndex < 0) {
+			// the pointer we were tracking went away without
+			// an up we saw
+			return mGestures.isDragging();
+		}
+
+		// the samples the system batched into this event since
+		// the last one, oldest first, then the current one
+		final int historySize = ev.getHistorySize();
+		for (int h = 0; h < historySize; h++) {
+			mGestures.sample(ev.getHistoricalEventTime(h),
+					ev.getHistoricalX(activePointerIndex, h),
+					ev.getHistoricalY(activePointerIndex, h));
+		}
+		final float x = ev.getX(activePointerIndex);
+		final float y = ev.getY(activePointerIndex);
+		final boolean wasDragging = mGestures.isDragging();
+		final boolean dragging = mGestures.move(ev.getEventTime(), x, y);
+		mPredictionTime = ev.getEventTime() + FRAME_MILLIS;
+		if (mGestures.isDraggingAcross()) {
+			// a drag across the scroll axis is the parents', stop
+			// watching so they can intercept it
+			endGesture();
+			return false;
+		}
+
+		if (dragging && mNestedScrolling) {
+			if (wasDragging) {
+				dispatchNestedDrag(x, y);
+			} else {
+				// measure from where the drag started, so the
+				// parent does not jump by the touch slop
+				mNestedLastX = x;
+				mNestedLastY = y;
+			}
+		}
+		return dragging;
+	}
+
+	/**
+	 * Offer the motion since the last event along the scroll axis to
+	 * the nested scrolling parent; what it does not take drives the
+	 * selection here, so is passed on as consumed.  The wobble across
+	 * the axis is not offered at all.
+	 */
+	private void dispatchNestedDrag(float x, float y) {
+		final boolean horizontal = mScrollAxis == SCROLL_AXIS_HORIZONTAL;
+		int dx = horizontal ? (int) (mNestedLastX - x) : 0;
+		int dy = horizontal ? 0 : (int) (mNestedLastY - y);
+		final int[] offset = mNestedOffset;
+		offset[0] = 0;
+		offset[1] = 0;
+		if (dispatchNestedPreScroll(dx, dy, mNestedConsumedDelta, offset)) {
+			dx -= mNestedConsumedDelta[0];
+			dy -= mNestedConsumedDelta[1];
+			mNestedConsumedX |= mNestedConsumedDelta[0] != 0;
+			mNestedConsumedY |= mNestedConsumedDelta[1] != 0;
+		}
+		final int preX = offset[0];
+		final int preY = offset[1];
+		if (dispatchNestedScroll(dx, dy, 0, 0, offset)) {
+			offset[0] += preX;
+			offset[1] += preY;
+		}
+		// the parent scrolled and moved us with it
+		mNestedConsumedX |= offset[0] != 0;
+		mNestedConsumedY |= offset[1] != 0;
+		// the next event arrives in the moved coordinates
+		mNestedLastX = x - offset[0];
+		mNestedLastY = y - offset[1];
+	}
+
+	/**
+	 * the touch stream is ours now, keep the parents from taking it
+	 */
+	private void claimGesture() {
+		final ViewParent parent = getParent();
+		if (parent != null) {
+			parent.requestDisallowInterceptTouchEvent(true);
+		}
+	}
+
+	/**
+	 * the gesture is over or was taken away
+	 */
+	private void endGesture() {
+		mActivePointerId = INVALID_POINTER;
+		mGestures.cancel();
+		mSelectionEvents.gestureEnded();
+		if (mVelocityTracker != null) {
+			mVelocityTracker.recycle();
+			mVelocityTracker = null;
+		}
+		if (mNestedScrolling) {
+			mNestedScrolling = false;
+			stopNestedScroll();
+		}
+	}
+
 	/**
 	 * "borrowed" this code direct from the default workspace Launcher2 code.
 	 * It attempts to make the swipe action work when the there are 
@@ -474,18 +1514,67 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 
 		final int pointerId = ev.getPointerId(pointerIndex);
 		if (pointerId == mActivePointerId) {
-			// This was our active pointer going up. Choose a new
-			// active pointer and adjust accordingly.
-			// TODO: Make this decision more intelligent.
-			final int newPointerIndex = pointerIndex == 0 ? 1 : 0;
-			mLastMotionX = ev.getX(newPointerIndex);
+			// This was our active pointer going up. Carry on with
+			// the remaining pointer closest to where it lifted so
+			// the gesture does not jump across the screen
+			final int newPointerIndex = findClosestPointer(ev, pointerIndex);
+			if (newPointerIndex < 0) {
+				mActivePointerId = INVALID_POINTER;
+				return;
+			}
+			mGestures.pointerChanged(ev.getEventTime(), ev.getX(newPointerIndex),
+					ev.getY(newPointerIndex));
 			mActivePointerId = ev.getPointerId(newPointerIndex);
+			// nested deltas carry on from the new pointer too
+			mNestedLastX = ev.getX(newPointerIndex);
+			mNestedLastY = ev.getY(newPointerIndex);
 			if (mVelocityTracker != null) {
 				mVelocityTracker.clear();
 			}
 		}
 	}
 
+	/**
+	 * @return the index of the pointer nearest the one at liftedIndex,
+	 * not counting that one, or -1 if there is no other pointer
+	 */
+	private static int findClosestPointer(MotionEvent ev, int liftedIndex) {
+		final float x = ev.getX(liftedIndex);
+		final float y = ev.getY(liftedIndex);
+		int closest = -1;
+		float closestDistance = Float.MAX_VALUE;
+		final int count = ev.getPointerCount();
+		for (int i = 0; i < count; i++) {
+			if (i == liftedIndex) {
+				continue;
+			}
+			float dx = ev.getX(i) - x;
+			float dy = ev.getY(i) - y;
+			float distance = dx * dx + dy * dy;
+			if (distance < closestDistance) {
+				closestDistance = distance;
+				closest = i;
+			}
+		}
+		return closest;
+	}
+
+	/**
+	 * Where the finger tracking the current touch is expected to be
+	 * when the next frame is shown, extrapolated from the recent
+	 * touch samples.  Meant for children or models that follow
+	 * the finger, so they do not visibly trail it.
+	 * @return false if there is no touch in progress
+	 */
+	public boolean getPredictedTouch(PointF out) {
+		if (mActivePointerId == INVALID_POINTER) {
+			return false;
+		}
+		out.set(mGestures.getPredictedX(mPredictionTime),
+				mGestures.getPredictedY(mPredictionTime));
+		return true;
+	}
+
 	/**
 	 * Fling the scroll view
 	 * 
@@ -495,7 +1584,9 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	 *            we want to scroll towards the left.
 	 */
 	public void flingX(int velocityX) {
-		Log.d("CTC", "flingX v:" + velocityX);
+		if (DEBUG) {
+			Log.d(TAG, "flingX v:" + velocityX);
+		}
 		if (velocityX > 0) {
 			next();
 		} else {
@@ -505,7 +1596,9 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 
 	public void flingY(int velocityY) {
 		// for now, fling vertical will just move the list by one view
-		Log.d("CTC", "flingY v:" + velocityY);
+		if (DEBUG) {
+			Log.d(TAG, "flingY v:" + velocityY);
+		}
 		if (velocityY > 0) {
 			next();
 		} else {
@@ -514,91 +1607,36 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	}
 
 	protected void findAndSelectViewAt(int x, int y) {
-		// Note: this is very inefficient and does not manage overlaps
-		// we simple iterate the views and find the first one that
-		// the point tapped lands in.
-		for (ViewHelper vh : helperList.values()) {
-			if (vh.isPointInView(x, y)) {
-				int i = vh.getIndex();
-				if (i != -1) {
-					if (i == _selected) {
-						// the current selected view has been tapped
-						if (mSelectionListener != null) {
-							mSelectionListener.onItemSelected(i, vh.getView().getId());
-						}
-					} else {
-						moveTo(i);
-					}
-				}
+		// the same rule GestureRecognizer.release() applies to a
+		// tap: the topmost child the point lands in
+		int i = mEngine.hitTest(x, y);
+		if (i != -1) {
+			if (i == mEngine.getSelected()) {
+				// the current selected view has been tapped
+				mSelectionEvents.itemActivated(i);
+			} else {
+				moveTo(i);
 			}
 		}
 	}
 
-	
-	protected void selectChild(int newselection) {
-		// set new selection index and re-measure children for new
-		// position
-		// TODO: It would be better if we could re-measure
-		//       at each step of the animation
-		//       when just animating ImageViews around everything looks fine
-		//       but if you animate more complex content a smooth change
-		//       would make a better presentation.  Exercise for the future.
-		_selected = newselection;
-		final int count = getChildCount();
-		for (int i = 0; i < count; i++) {
-
-			View v = getChildAt(i);
-			Rect r = mLayoutModel.getLayoutRect(i, _selected);
-			final int childWidthMeasureSpec = MeasureSpec.makeMeasureSpec(r.right-r.left,
-					MeasureSpec.EXACTLY);
-			final int childHeightMeasureSpec = MeasureSpec.makeMeasureSpec(r.bottom-r.top,
-					MeasureSpec.EXACTLY);
-
-			v.measure(childWidthMeasureSpec, childHeightMeasureSpec);
-		}
-	}
-
-	protected void animateLayout() {
-		int i;
-
-		// set up ViewHelpers to animate the views to a new location
-		// by asking for new layout Rect and passing in the updated
-		// selected item position.  The current position is already
-		// stored away
-		View v;
-		ViewHelper vh;
-		Rect r;
-		for (i = 0; i < getChildCount(); i++) {
-			v = getChildAt(i);
-			vh = getViewHelper(v,i);
-			r = mLayoutModel.getLayoutRect(i, _selected);
-			vh.setTargetPosition(r.left,r.top,r.right,r.bottom);
-		}
-
-		// once all the target positions are gathered
-		// set the "please animate me" flag and call layout
-		mAnimating = true;
-		mStartDrawTime = -1;
-		layoutChildren();
-	}
-
 	/**
 	 * moveUp and next are the same action
 	 * moveUp() is internal and does not check boundaries
 	 * next() is public and does
 	 */
 	protected void moveUp() {
-		if (!mAnimating) {
-			moveTo(_selected + 1);
+		if (!mEngine.isAnimating()) {
+			moveTo(mEngine.getSelected() + 1);
 		}
 	}
 	
 	public int next() {
-		if (_selected < getChildCount() - 1) {
+		if (mEngine.getSelected() < getChildCount() - 1) {
 			moveUp();
 		}
 
-		return _selected;
+		return mEngine.getSelected();
 	}
 
 	/**
@@ -607,16 +1645,16 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	 * prev() is public and does
 	 */
 	protected void moveDown() {
-		if (!mAnimating) {
-			moveTo(_selected - 1);
+		if (!mEngine.isAnimating()) {
+			moveTo(mEngine.getSelected() - 1);
 		}
 	}
 	
 	public int prev() {
-		if (_selected > 0) {
+		if (mEngine.getSelected() > 0) {
 			moveDown();
 		}
-		return _selected;
+		return mEngine.getSelected();
 	}
 	
 	/**
@@ -626,13 +1664,38 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	 * @param index
 	 */
 	protected void moveTo(int index) {
-		if (!mAnimating) {
-			if ((index != _selected) && (index >= 0)
-					&& (index < getChildCount())) {
-				selectChild(index);
-				
-				animateLayout();			
+		mEngine.setCount(getChildCount());
+		ensureModelSize();
+		final int oldSelection = mEngine.getSelected();
+		if (mEngine.moveTo(index)) {
+			// the snapshot only covers the old selection
+			mActiveSnapshot = null;
+
+			// re-measure children for their new position
+			// TODO: It would be better if we could re-measure
+			//       at each step of the animation
+			//       when just animating ImageViews around everything looks fine
+			//       but if you animate more complex content a smooth change
+			//       would make a better presentation.  Exercise for the future.
+			inflateVisibleStubs(true);
+			measureChildren();
+
+			// once all the target positions are gathered
+			// start the animation with a layout pass
+			mFirstAnimationFrame = true;
+			mLastStepTime = -1;
+			if (mScheduler != null) {
+				// start together with the other groups in the
+				// same transition
+				long start = mScheduler.getTransitionTime();
+				if (start != -1) {
+					mEngine.setStartTime(start);
+				}
 			}
+			mSelectionEvents.selectionChanged(index);
+			layoutChildren();
+
+			prefetchAround(index, index - oldSelection);
 		}
 	}
 
@@ -649,122 +1712,7 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	 * @return
 	 */
 	public int getSelection() {
-		return _selected;
-	}
-	
-	
-	/**
-	 * ViewHelper is a wrapper on the data required to animate a view
-	 * from a start position to a target position.
-	 */
-	private class ViewHelper {
-		// The start left top right bottom
-		int s_l;
-		int s_t;
-		int s_r;
-		int s_b;
-		// the target (or end) left top right bottom
-		int e_l;
-		int e_t;
-		int e_r;
-		int e_b;
-		int index;
-		View _v;
-
-		ViewHelper(View v, int i) {
-			_v = v;
-			setIndex(i);
-		}
-
-		void setStartPosition(int l, int t, int r, int b) {
-			s_l = l;
-			s_t = t;
-			s_r = r;
-			s_b = b;
-		}
-
-		void setTargetPosition(int l, int t, int r, int b) {
-			e_l = l;
-			e_t = t;
-			e_r = r;
-			e_b = b;
-		}
-
-		void setIndex(int i) {
-			index = i;
-		}
-
-		int getIndex() {
-			return index;
-		}
-		
-		View getView() {
-			return _v;
-		}
-
-		/**
-		 * layoutAtTime is called with a value that represents the 
-		 * current time between the start of the animation and when it
-		 * should end as a percentage (value from 0 to 1.0)
-		 * 
-		 * Using this value we simply determine where we are on a straight line
-		 * between the start and end point 
-		 * 
-		 * Just like any of the Animation classes, we can also have an
-		 * Interpolator set which provides an effect by tweaking the timeslice
-		 * value.
-		 * 
-		 * Once the current position is calculated, call layout on the view
-		 * 
-		 * @param t_req  the current timeslice %
-		 */
-		void layoutAtTime(float t_req) {
-			float t;
-
-			if (mAnimationInterpolator != null) {
-				t = mAnimationInterpolator.getInterpolation(t_req);
-			} else {
-				t = t_req;
-			}
-
-			int d_l = (int) ((e_l - s_l) * t);
-			int cur_l = s_l + d_l;
-			int d_t = (int) ((e_t - s_t) * t);
-			int cur_t = s_t + d_t;
-			int d_r = (int) ((e_r - s_r) * t);
-			int cur_r = s_r + d_r;
-			int d_b = (int) ((e_b - s_b) * t);
-			int cur_b = s_b + d_b;
-
-			_v.layout(cur_l, cur_t, cur_r, cur_b);
-		}
-
-		/**
-		 * For touch events, determine if the x,y coordinate provided
-		 * falls within this view.
-		 * @param x
-		 * @param y
-		 * @return true if x,y is in the view bounds
-		 *         false otherwise
-		 */
-		boolean isPointInView(int x, int y) {
-			return ((index != -1) && (s_l < x) && (s_r > x) && (s_t < y) && (s_b > y));
-		}
-	}
-	
-	/**
-	 * Find the view helper for a view or create one if none exists
-	 * @param v
-	 * @param pos
-	 * @return
-	 */
-	protected ViewHelper getViewHelper(View v, int pos) {
-		ViewHelper vh = helperList.get(v);
-		if (vh == null) {
-			vh = new ViewHelper(v, pos);
-			helperList.put(v, vh);
-		}
-		return vh;
+		return mEngine.getSelected();
 	}
 	
 	/**
@@ -779,78 +1727,32 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	 * 
 	 * This implementation of the LayoutModel provides a default
 	 * where each view is a square with the selected view centered in a 
-	 * horizontal line of views.  
+	 * horizontal line of views.  The math is in the core
+	 * DefaultBoundsModel.
 	 * 
 	 * To use this layout model as is, simply extend this model and 
-	 * override the selection methods
+	 * override getLayoutRect.  The group only hands the core model to
+	 * the engine directly when this class is used unchanged.
 	 */
 	public class DefaultLayoutModel implements LayoutModel {
-		int viewspacing = 20;
-		
-		int layoutHeight=-1;
-		int layoutWidth=-1;
-		
-		int focus_height;
-		int focus_width;
-		int unfocus_height;
-		int unfocus_width;
-		
+		final DefaultBoundsModel mBoundsModel = new DefaultBoundsModel();
+		private final Bounds mRectBounds = new Bounds();
+		private final Rect rec = new Rect();
+
 		/**
 		 * called when the parent view size changes
 		 */
 		public void onSizeChanged(int width, int height, int oldw, int oldh) {
-			layoutHeight = height;
-			layoutWidth = width;
-			
-			// try to get the child views to measure as follows
-			if (height > width) {
-				focus_height = (int) (height * .30);			
-				unfocus_height = focus_height - (viewspacing *2);
-				focus_width = focus_height;
-				unfocus_width = unfocus_height;
-			} else {
-				focus_height = (int) (height * .60);			
-				unfocus_height = focus_height - (viewspacing *2);
-				focus_width = focus_height;
-				unfocus_width = unfocus_height;
-			}
+			mBoundsModel.onSizeChanged(width, height, oldw, oldh);
 		}
-		
+
 		/**
-		 * called for each child (by index) to get a layout Rect
+		 * called for each child (by index) to get a layout Rect.
+		 * The same Rect is handed back each time.
 		 */
 		public Rect getLayoutRect(int pos, int selected) {
-			Rect rec = new Rect();
-
-			int s_top = layoutHeight / 2 - focus_height / 2;
-			int s_left = layoutWidth / 2 - focus_width / 2;
-
-			int t;
-			int l;
-			int b;
-			int r;
-			
-			if (pos < selected) {
-				l = s_left - ((unfocus_width+viewspacing)*(selected-pos));
-				t = s_top + viewspacing;
-				r = l + unfocus_width;
-				b = t + unfocus_height;
-			} else if (pos == selected) {
-				// pos is the selected item
-				l = s_left;
-				t = s_top;
-				r = s_left + focus_width;
-				b = s_top + focus_height;
-			} else {
-				// pos > selected
-				l = s_left + focus_width + viewspacing + ((unfocus_width+viewspacing)*(pos-selected-1));
-				t = s_top + viewspacing;
-				r = l + unfocus_width;
-				b = t + unfocus_height;		
-			}
-			
-			rec.set(l,t,r,b);
-			
+			mBoundsModel.getLayoutBounds(pos, selected, mRectBounds);
+			rec.set(mRectBounds.left, mRectBounds.top, mRectBounds.right, mRectBounds.bottom);
 			return rec;		
 		}
 	}
@@ -858,5 +1760,26 @@ public final class DynamicLayoutViewGroup extends ViewGroup {
 	public interface ItemSelectedListener {
 		public void onItemSelected(int pos, int viewId);
 	}
+
+	/**
+	 * Selection events, see setSelectionDispatchMode for when they
+	 * arrive.  All calls are on the UI thread.
+	 */
+	public interface SelectionEventListener {
+		/**
+		 * a new item was selected and is animating into place
+		 */
+		public void onSelectionChanged(int pos);
+
+		/**
+		 * the animation to the selected item has finished
+		 */
+		public void onSelectionSettled(int pos, int viewId);
+
+		/**
+		 * the selected item was tapped
+		 */
+		public void onItemActivated(int pos, int viewId);
+	}
 		
 }
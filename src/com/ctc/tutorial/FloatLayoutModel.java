@@ -0,0 +1,37 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import android.graphics.RectF;
+
+/**
+ * A LayoutModel that places children at sub-pixel positions.  The
+ * view group animates size and position separately from these
+ * bounds and only resizes a child when its pixel size changes, so
+ * a child that keeps its size is just moved on each frame.
+ *
+ * getLayoutRect is still used where whole pixels are wanted, it
+ * can simply round the RectF.
+ */
+public interface FloatLayoutModel extends LayoutModel {
+	/**
+	 * called for each child (by index) to get a layout RectF.  The
+	 * caller copies the values straight away, so a model may hand
+	 * back the same RectF every time.
+	 */
+	public RectF getLayoutRectF(int pos, int selected);
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import java.util.ArrayList;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+import com.ctc.tutorial.core.FrameClock;
+
+/**
+ * Ticks every animating DynamicLayoutViewGroup from one callback per
+ * frame, so a screen full of carousels costs one frame callback
+ * instead of one per group.  Groups register when they start
+ * animating and are dropped as soon as they report they are idle;
+ * with nothing registered no callback is posted at all.
+ *
+ * Every client ticked in the same callback sees the same frame time.
+ * For transitions that must start together, wrap the selection
+ * changes in beginTransition() / endTransition() and they all share
+ * one start time.
+ *
+ * Must be used from the thread of the Looper it was created with.
+ */
+public final class FrameScheduler {
+
+	/**
+	 * Something animated by the scheduler
+	 */
+	public interface Client {
+		/**
+		 * advance to the given frame time
+		 * @return true if more frames are wanted
+		 */
+		public boolean doFrame(long frameTime);
+	}
+
+	private static final int FRAME_MILLIS = 16;
+
+	private static FrameScheduler sShared;
+
+	private final Handler mHandler;
+	private final ArrayList<Client> mClients = new ArrayList<Client>();
+	private FrameClock mClock;
+	private boolean mScheduled = false;
+	private long mTransitionTime = -1;
+
+	private final Runnable mTick = new Runnable() {
+		public void run() {
+			tick();
+		}
+	};
+
+	public FrameScheduler(Looper looper) {
+		mHandler = new Handler(looper);
+		mClock = new FrameClock() {
+			public long uptimeMillis() {
+				return SystemClock.uptimeMillis();
+			}
+		};
+	}
+
+	/**
+	 * The scheduler shared by all groups on the main thread
+	 */
+	public static FrameScheduler getShared() {
+		if (sShared == null) {
+			sShared = new FrameScheduler(Looper.getMainLooper());
+		}
+		return sShared;
+	}
+
+	public void setClock(FrameClock clock) {
+		mClock = clock;
+	}
+
+	/**
+	 * Start ticking a client, if it is not already
+	 */
+	public void register(Client client) {
+		if (!mClients.contains(client)) {
+			mClients.add(client);
+		}
+		if (!mScheduled) {
+			mScheduled = true;
+			mHandler.post(mTick);
+		}
+	}
+
+	public void unregister(Client client) {
+		mClients.remove(client);
+		if (mClients.isEmpty() && mScheduled) {
+			mScheduled = false;
+			mHandler.removeCallbacks(mTick);
+		}
+	}
+
+	/**
+	 * Animations started from now until endTransition() share
+	 * the same start time
+	 */
+	public void beginTransition() {
+		mTransitionTime = mClock.uptimeMillis();
+	}
+
+	public void endTransition() {
+		mTransitionTime = -1;
+	}
+
+	/**
+	 * the shared start time of the open transition, -1 if there is
+	 * none and the animation starts on its first frame
+	 */
+	public long getTransitionTime() {
+		return mTransitionTime;
+	}
+
+	public int getClientCount() {
+		return mClients.size();
+	}
+
+	private void tick() {
+		mScheduled = false;
+		final long frameTime = mClock.uptimeMillis();
+		// walk backwards so idle clients can be dropped in place,
+		// a client registered during the tick waits for the next one
+		for (int i = mClients.size() - 1; i >= 0; i--) {
+			if (i >= mClients.size()) {
+				continue;
+			}
+			if (!mClients.get(i).doFrame(frameTime)) {
+				mClients.remove(i);
+			}
+		}
+		if (!mClients.isEmpty() && !mScheduled) {
+			mScheduled = true;
+			long next = frameTime + FRAME_MILLIS - mClock.uptimeMillis();
+			mHandler.postDelayed(mTick, next > 0 ? next : 0);
+		}
+	}
+}
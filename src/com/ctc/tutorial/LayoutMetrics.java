@@ -0,0 +1,238 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in instrumentation for the DynamicLayoutViewGroup.  Counts
+ * layout, measure, draw and LayoutModel calls, and keeps a histogram
+ * of how long each animation step took.
+ *
+ * Everything is recorded with atomics so a snapshot can be taken
+ * from any thread without locking the UI thread.  When no metrics
+ * object is installed on the view group nothing is recorded at all.
+ */
+public final class LayoutMetrics {
+
+	/**
+	 * The frame interval the animation is expected to hit, in ms
+	 */
+	public static final float FRAME_INTERVAL_MS = 1000f / 60f;
+
+	/**
+	 * Histogram bucket i counts step times from 2^i up to 2^(i+1)
+	 * microseconds, the last bucket holds everything longer
+	 */
+	public static final int BUCKET_COUNT = 20;
+
+	/**
+	 * Called on the UI thread when a selection animation finishes
+	 */
+	public interface Listener {
+		public void onAnimationFinished(LayoutMetrics metrics,
+				int framesDelivered, int framesExpected, int jankyFrames);
+	}
+
+	private final AtomicLong mLayoutPasses = new AtomicLong();
+	private final AtomicLong mMeasurePasses = new AtomicLong();
+	private final AtomicLong mDrawPasses = new AtomicLong();
+	private final AtomicLong mModelCalls = new AtomicLong();
+	private final AtomicLong mAnimations = new AtomicLong();
+	private final AtomicLong mFramesDelivered = new AtomicLong();
+	private final AtomicLong mFramesExpected = new AtomicLong();
+	private final AtomicLong mJankyFrames = new AtomicLong();
+	private final AtomicLong mDroppedFrames = new AtomicLong();
+	private final AtomicLong mStepTimeTotalNanos = new AtomicLong();
+	private final AtomicLong mMeasureTimeTotalNanos = new AtomicLong();
+	private final AtomicLong mDrawTimeTotalNanos = new AtomicLong();
+	private final AtomicIntegerArray mStepHistogram = new AtomicIntegerArray(BUCKET_COUNT);
+
+	// per animation bookkeeping, only touched on the UI thread
+	private long mLastFrameNanos = -1;
+	private int mAnimationFrames;
+	private int mAnimationJank;
+
+	private Listener mListener;
+
+	public void setListener(Listener listener) {
+		mListener = listener;
+	}
+
+	/**
+	 * clear all of the counters
+	 */
+	public void reset() {
+		mLayoutPasses.set(0);
+		mMeasurePasses.set(0);
+		mDrawPasses.set(0);
+		mModelCalls.set(0);
+		mAnimations.set(0);
+		mFramesDelivered.set(0);
+		mFramesExpected.set(0);
+		mJankyFrames.set(0);
+		mDroppedFrames.set(0);
+		mStepTimeTotalNanos.set(0);
+		mMeasureTimeTotalNanos.set(0);
+		mDrawTimeTotalNanos.set(0);
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			mStepHistogram.set(i, 0);
+		}
+	}
+
+	void recordLayout() {
+		mLayoutPasses.incrementAndGet();
+	}
+
+	void recordMeasure(long nanos) {
+		mMeasurePasses.incrementAndGet();
+		mMeasureTimeTotalNanos.addAndGet(nanos);
+	}
+
+	void recordDraw(long nanos) {
+		mDrawPasses.incrementAndGet();
+		mDrawTimeTotalNanos.addAndGet(nanos);
+	}
+
+	void recordModelCalls(long calls) {
+		mModelCalls.addAndGet(calls);
+	}
+
+	void animationStarted() {
+		mAnimations.incrementAndGet();
+		mLastFrameNanos = -1;
+		mAnimationFrames = 0;
+		mAnimationJank = 0;
+	}
+
+	/**
+	 * record one animation step
+	 * @param startNanos  when the step started (System.nanoTime)
+	 * @param stepNanos   how long the step took
+	 * @param pacedMillis extra time the steps are meant to be apart
+	 *                    when pacing lowers the update rate, frames
+	 *                    skipped on purpose are not jank
+	 */
+	void recordFrame(long startNanos, long stepNanos, long pacedMillis) {
+		mFramesDelivered.incrementAndGet();
+		mStepTimeTotalNanos.addAndGet(stepNanos);
+		mStepHistogram.incrementAndGet(bucketFor(stepNanos / 1000));
+		mAnimationFrames++;
+
+		if (mLastFrameNanos != -1) {
+			// anything later than one and a half step intervals
+			// after the previous step missed at least one frame
+			final float expectedMs = FRAME_INTERVAL_MS + pacedMillis;
+			float intervalMs = (startNanos - mLastFrameNanos) / 1000000f;
+			if (intervalMs > expectedMs * 1.5f) {
+				mJankyFrames.incrementAndGet();
+				mDroppedFrames.addAndGet((int) (intervalMs / expectedMs) - 1);
+				mAnimationJank++;
+			}
+		}
+		mLastFrameNanos = startNanos;
+	}
+
+	void animationFinished(int durationMs) {
+		int expected = (int) Math.ceil(durationMs / FRAME_INTERVAL_MS);
+		mFramesExpected.addAndGet(expected);
+		mLastFrameNanos = -1;
+		if (mListener != null) {
+			mListener.onAnimationFinished(this, mAnimationFrames, expected, mAnimationJank);
+		}
+	}
+
+	static int bucketFor(long micros) {
+		if (micros <= 1) {
+			return 0;
+		}
+		int b = 63 - Long.numberOfLeadingZeros(micros);
+		return b < BUCKET_COUNT ? b : BUCKET_COUNT - 1;
+	}
+
+	/**
+	 * Take a consistent enough copy of the counters.  Safe to call
+	 * from any thread.
+	 */
+	public Snapshot snapshot() {
+		Snapshot s = new Snapshot();
+		s.layoutPasses = mLayoutPasses.get();
+		s.measurePasses = mMeasurePasses.get();
+		s.drawPasses = mDrawPasses.get();
+		s.modelCalls = mModelCalls.get();
+		s.animations = mAnimations.get();
+		s.framesDelivered = mFramesDelivered.get();
+		s.framesExpected = mFramesExpected.get();
+		s.jankyFrames = mJankyFrames.get();
+		s.droppedFrames = mDroppedFrames.get();
+		s.stepTimeTotalNanos = mStepTimeTotalNanos.get();
+		s.measureTimeTotalNanos = mMeasureTimeTotalNanos.get();
+		s.drawTimeTotalNanos = mDrawTimeTotalNanos.get();
+		s.stepHistogram = new int[BUCKET_COUNT];
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			s.stepHistogram[i] = mStepHistogram.get(i);
+		}
+		return s;
+	}
+
+	/**
+	 * A point in time copy of the metrics
+	 */
+	public static final class Snapshot {
+		public long layoutPasses;
+		public long measurePasses;
+		public long drawPasses;
+		public long modelCalls;
+		public long animations;
+		public long framesDelivered;
+		public long framesExpected;
+		public long jankyFrames;
+		public long droppedFrames;
+		public long stepTimeTotalNanos;
+		public long measureTimeTotalNanos;
+		public long drawTimeTotalNanos;
+		/**
+		 * step time histogram, see BUCKET_COUNT
+		 */
+		public int[] stepHistogram;
+
+		/**
+		 * estimate a percentile (0 to 100) of the step time in
+		 * microseconds from the histogram, returns the upper bound
+		 * of the bucket the percentile falls in
+		 */
+		public long stepTimePercentileMicros(float percentile) {
+			long total = 0;
+			for (int c : stepHistogram) {
+				total += c;
+			}
+			if (total == 0) {
+				return 0;
+			}
+			long wanted = (long) Math.ceil(total * percentile / 100f);
+			long seen = 0;
+			for (int i = 0; i < stepHistogram.length; i++) {
+				seen += stepHistogram[i];
+				if (seen >= wanted) {
+					return 1L << (i + 1);
+				}
+			}
+			return 1L << stepHistogram.length;
+		}
+	}
+}
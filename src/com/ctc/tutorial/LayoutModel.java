@@ -25,7 +25,9 @@ public interface LayoutModel {
 	public void onSizeChanged(int width, int height, int oldw, int oldh);
 	
 	/**
-	 * called for each child (by index) to get a layout Rect
+	 * called for each child (by index) to get a layout Rect.  The
+	 * caller copies the values straight away, so a model may hand
+	 * back the same Rect every time.
 	 */
 	public Rect getLayoutRect(int pos, int selected);
 }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import android.graphics.Rect;
+import android.graphics.RectF;
+
+import com.ctc.tutorial.core.Bounds;
+import com.ctc.tutorial.core.BoundsModel;
+import com.ctc.tutorial.core.FloatBounds;
+import com.ctc.tutorial.core.FloatBoundsModel;
+import com.ctc.tutorial.core.ModelWrapper;
+
+/**
+ * Lets a Rect based LayoutModel drive the LayoutEngine.  Models
+ * that already implement BoundsModel are used directly, RectF
+ * models go through the float path.  The engine sees the wrapped
+ * model through getWrappedModel().
+ */
+class LayoutModelAdapter implements BoundsModel, ModelWrapper {
+	private final LayoutModel mModel;
+
+	private LayoutModelAdapter(LayoutModel model) {
+		mModel = model;
+	}
+
+	static BoundsModel wrap(LayoutModel model) {
+		if (model instanceof BoundsModel) {
+			return (BoundsModel) model;
+		}
+		if (model.getClass() == DynamicLayoutViewGroup.DefaultLayoutModel.class) {
+			// the unchanged default, skip the Rect.  A subclass may
+			// override getLayoutRect so it takes the normal path.
+			return ((DynamicLayoutViewGroup.DefaultLayoutModel) model).mBoundsModel;
+		}
+		if (model instanceof FloatLayoutModel) {
+			return new FloatAdapter((FloatLayoutModel) model);
+		}
+		return new LayoutModelAdapter(model);
+	}
+
+	public Object getWrappedModel() {
+		return mModel;
+	}
+
+	public void onSizeChanged(int width, int height, int oldw, int oldh) {
+		mModel.onSizeChanged(width, height, oldw, oldh);
+	}
+
+	public void getLayoutBounds(int pos, int selected, Bounds out) {
+		Rect r = mModel.getLayoutRect(pos, selected);
+		out.set(r.left, r.top, r.right, r.bottom);
+	}
+
+	private static final class FloatAdapter extends LayoutModelAdapter
+			implements FloatBoundsModel {
+		private final FloatLayoutModel mFloatModel;
+
+		FloatAdapter(FloatLayoutModel model) {
+			super(model);
+			mFloatModel = model;
+		}
+
+		public void getLayoutBounds(int pos, int selected, FloatBounds out) {
+			RectF r = mFloatModel.getLayoutRectF(pos, selected);
+			out.set(r.left, r.top, r.right, r.bottom);
+		}
+	}
+}
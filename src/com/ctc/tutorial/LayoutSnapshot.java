@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import android.os.Bundle;
+
+import com.ctc.tutorial.core.Bounds;
+
+/**
+ * A compact copy of the layout Rect's computed by the LayoutModel for one
+ * view size and one selected item.  The Rect's are stored as a flat
+ * int array (left, top, right, bottom per child) so the snapshot can
+ * go straight into the instance state Bundle.
+ *
+ * The children are always measured EXACTLY to their layout Rect, so
+ * the Rect's also hold the measured sizes.
+ */
+final class LayoutSnapshot {
+	int width;
+	int height;
+	int selected;
+	int count;
+	int[] rects;
+
+	LayoutSnapshot() {
+		rects = new int[0];
+	}
+
+	/**
+	 * true if this snapshot was taken for the given size, selection
+	 * and number of children
+	 */
+	boolean matches(int w, int h, int sel, int childCount) {
+		return (width == w) && (height == h) && (selected == sel)
+				&& (count == childCount);
+	}
+
+	/**
+	 * copy the settled positions, growing the storage only when
+	 * needed
+	 */
+	void capture(int w, int h, int sel, int childCount, int[] current) {
+		width = w;
+		height = h;
+		selected = sel;
+		count = childCount;
+		if (rects.length < childCount * 4) {
+			rects = new int[childCount * 4];
+		}
+		System.arraycopy(current, 0, rects, 0, childCount * 4);
+	}
+
+	void get(int pos, Bounds out) {
+		int o = pos * 4;
+		out.set(rects[o], rects[o + 1], rects[o + 2], rects[o + 3]);
+	}
+
+	/**
+	 * store the snapshot as primitive arrays under the given key prefix
+	 */
+	void writeTo(Bundle bundle, String prefix) {
+		bundle.putIntArray(prefix + "Dims", new int[] { width, height, selected, count });
+		int[] copy = new int[count * 4];
+		System.arraycopy(rects, 0, copy, 0, copy.length);
+		bundle.putIntArray(prefix + "Rects", copy);
+	}
+
+	/**
+	 * read back a snapshot written by writeTo, null if there
+	 * was none or it does not look sane
+	 */
+	static LayoutSnapshot readFrom(Bundle bundle, String prefix) {
+		int[] dims = bundle.getIntArray(prefix + "Dims");
+		int[] r = bundle.getIntArray(prefix + "Rects");
+		if ((dims == null) || (r == null) || (dims.length != 4)
+				|| (r.length != dims[3] * 4)) {
+			return null;
+		}
+		LayoutSnapshot snapshot = new LayoutSnapshot();
+		snapshot.width = dims[0];
+		snapshot.height = dims[1];
+		snapshot.selected = dims[2];
+		snapshot.count = dims[3];
+		snapshot.rects = r;
+		return snapshot;
+	}
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * What each of a DynamicLayoutViewGroup's caches is holding, as
+ * returned by getMemoryReport().  Byte counts are estimates of the
+ * array and bitmap payloads, object headers are not included.
+ */
+public final class MemoryReport {
+
+	public static final class Entry {
+		public final String name;
+		public final int items;
+		public final long bytes;
+
+		Entry(String name, int items, long bytes) {
+			this.name = name;
+			this.items = items;
+			this.bytes = bytes;
+		}
+	}
+
+	private final List<Entry> mEntries = new ArrayList<Entry>();
+
+	void add(String name, int items, long bytes) {
+		mEntries.add(new Entry(name, items, bytes));
+	}
+
+	public List<Entry> getEntries() {
+		return mEntries;
+	}
+
+	public long getTotalBytes() {
+		long total = 0;
+		for (Entry e : mEntries) {
+			total += e.bytes;
+		}
+		return total;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (Entry e : mEntries) {
+			sb.append(e.name).append(": ").append(e.items).append(" items, ")
+				.append(e.bytes).append(" bytes\n");
+		}
+		sb.append("total: ").append(getTotalBytes()).append(" bytes");
+		return sb.toString();
+	}
+}
@@ -0,0 +1,257 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import android.view.View;
+
+/**
+ * Delivers the selection events of a DynamicLayoutViewGroup to its
+ * listeners.  Events can go out immediately, on the touch or layout
+ * path that caused them, or be held and posted later so listener
+ * work never delays a frame.
+ *
+ * Held changes and settles are coalesced over a burst of movement:
+ * the settle is only sent once the selection has stayed put, with no
+ * new change or touch, for SETTLE_DELAY_MILLIS.  Then the newest
+ * change and the settle go out together, so during a run of fast
+ * flings listeners hear about where the selection ended up rather
+ * than every step on the way.  An activation follows the frame that
+ * shows it.
+ */
+final class SelectionDispatcher implements Runnable {
+	private static final int NONE = -1;
+
+	/**
+	 * how long the selection has to stay settled before the held
+	 * events go out
+	 */
+	static final int SETTLE_DELAY_MILLIS = 200;
+
+	private final DynamicLayoutViewGroup mHost;
+	private boolean mAfterFrame = true;
+
+	private DynamicLayoutViewGroup.SelectionEventListener mListener;
+	private DynamicLayoutViewGroup.ItemSelectedListener mItemListener;
+
+	// pending positions, NONE when there is nothing to send
+	private int mChanged = NONE;
+	private int mSettled = NONE;
+	private int mActivated = NONE;
+	// the last change actually delivered, to drop repeats
+	private int mLastChanged = NONE;
+	// an activation is posted to follow the frame
+	private boolean mPosted = false;
+	// the settle is waiting out SETTLE_DELAY_MILLIS
+	private boolean mSettleScheduled = false;
+	// a touch is down, the settle waits for it to end
+	private boolean mInGesture = false;
+
+	private final Runnable mSettleDelivery = new Runnable() {
+		public void run() {
+			mSettleScheduled = false;
+			flush();
+		}
+	};
+
+	SelectionDispatcher(DynamicLayoutViewGroup host) {
+		mHost = host;
+	}
+
+	void setListener(DynamicLayoutViewGroup.SelectionEventListener listener) {
+		mListener = listener;
+	}
+
+	void setItemSelectedListener(DynamicLayoutViewGroup.ItemSelectedListener listener) {
+		mItemListener = listener;
+	}
+
+	void setAfterFrame(boolean afterFrame) {
+		mAfterFrame = afterFrame;
+		if (!afterFrame) {
+			// nothing should be left waiting
+			cancel();
+			flush();
+		}
+	}
+
+	void selectionChanged(int pos) {
+		mChanged = pos;
+		if (!mAfterFrame) {
+			flush();
+		} else {
+			// still moving, a settle held from before is stale
+			mSettled = NONE;
+			unscheduleSettle();
+		}
+	}
+
+	void selectionSettled(int pos) {
+		mSettled = pos;
+		if (!mAfterFrame) {
+			flush();
+		} else {
+			scheduleSettle();
+		}
+	}
+
+	void itemActivated(int pos) {
+		mActivated = pos;
+		if (!mAfterFrame) {
+			flush();
+		} else if (!mHost.isShown()) {
+			// there will be no frame to wait for
+			post();
+		} else {
+			// make sure a frame comes, frameDrawn posts the event
+			mHost.invalidate();
+		}
+	}
+
+	/**
+	 * a touch went down, hold the settle until it is over
+	 */
+	void gestureStarted() {
+		mInGesture = true;
+		unscheduleSettle();
+	}
+
+	void gestureEnded() {
+		mInGesture = false;
+		if (mSettled != NONE) {
+			scheduleSettle();
+		}
+	}
+
+	/**
+	 * called at the end of each draw, the frame with the activation
+	 * is out so the event can follow it
+	 */
+	void frameDrawn() {
+		if (mAfterFrame && (mActivated != NONE)) {
+			post();
+		}
+	}
+
+	private void post() {
+		if (!mPosted) {
+			mPosted = true;
+			mHost.post(this);
+		}
+	}
+
+	/**
+	 * (re)start the quiet period before the settle goes out
+	 */
+	private void scheduleSettle() {
+		unscheduleSettle();
+		if (!mInGesture) {
+			mSettleScheduled = true;
+			mHost.postDelayed(mSettleDelivery, SETTLE_DELAY_MILLIS);
+		}
+	}
+
+	private void unscheduleSettle() {
+		if (mSettleScheduled) {
+			mSettleScheduled = false;
+			mHost.removeCallbacks(mSettleDelivery);
+		}
+	}
+
+	/**
+	 * drop any posted delivery, the events stay pending until
+	 * resume()
+	 */
+	void cancel() {
+		if (mPosted) {
+			mPosted = false;
+			mHost.removeCallbacks(this);
+		}
+		unscheduleSettle();
+		mInGesture = false;
+	}
+
+	/**
+	 * post again whatever cancel() held back
+	 */
+	void resume() {
+		if (!mAfterFrame) {
+			return;
+		}
+		if (mActivated != NONE) {
+			post();
+		}
+		if (mSettled != NONE) {
+			scheduleSettle();
+		}
+	}
+
+	/**
+	 * the posted activation, with the newest change ahead of it so
+	 * listeners see them in order.  A held settle keeps waiting.
+	 */
+	public void run() {
+		mPosted = false;
+		final int changed = mChanged;
+		final int activated = mActivated;
+		mChanged = NONE;
+		mActivated = NONE;
+		deliver(changed, NONE, activated);
+	}
+
+	/**
+	 * send everything pending now
+	 */
+	void flush() {
+		final int changed = mChanged;
+		final int settled = mSettled;
+		final int activated = mActivated;
+		mChanged = NONE;
+		mSettled = NONE;
+		mActivated = NONE;
+		deliver(changed, settled, activated);
+	}
+
+	/**
+	 * changes first, then the settle and then the activation
+	 */
+	private void deliver(int changed, int settled, int activated) {
+		final DynamicLayoutViewGroup.SelectionEventListener listener = mListener;
+		if ((changed != NONE) && (changed != mLastChanged)) {
+			mLastChanged = changed;
+			if (listener != null) {
+				listener.onSelectionChanged(changed);
+			}
+		}
+		if ((settled != NONE) && (listener != null)) {
+			listener.onSelectionSettled(settled, viewIdAt(settled));
+		}
+		if (activated != NONE) {
+			final int viewId = viewIdAt(activated);
+			if (listener != null) {
+				listener.onItemActivated(activated, viewId);
+			}
+			if (mItemListener != null) {
+				mItemListener.onItemSelected(activated, viewId);
+			}
+		}
+	}
+
+	private int viewIdAt(int pos) {
+		// children may have gone while the event was held
+		return pos < mHost.getChildCount() ? mHost.getChildAt(pos).getId() : View.NO_ID;
+	}
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+import org.xmlpull.v1.XmlPullParser;
+import org.xmlpull.v1.XmlPullParserException;
+
+import android.content.res.Resources;
+import android.content.res.XmlResourceParser;
+import android.graphics.Rect;
+import android.view.InflateException;
+
+import com.ctc.tutorial.core.Bounds;
+import com.ctc.tutorial.core.TableBoundsModel;
+
+/**
+ * A LayoutModel loaded from an XML resource, so new layouts can be
+ * shipped without writing a model class.  The file lists slots as
+ * fractions of the view size for each orientation and how items map
+ * to slots:
+ *
+ * <pre>
+ * &lt;layout-table mapping="offset" anchor="2"&gt;
+ *     &lt;portrait&gt;
+ *         &lt;slot left="0.1" top="0.34" right="0.9" bottom="0.66" /&gt;
+ *         ...
+ *     &lt;/portrait&gt;
+ *     &lt;landscape&gt; ... &lt;/landscape&gt;
+ * &lt;/layout-table&gt;
+ * </pre>
+ *
+ * With mapping="offset" the selected item goes in the anchor slot and
+ * the items either side of it in the neighbouring slots.  With
+ * mapping="explicit" positions="n" there is one
+ * &lt;select index="s" slots="..." /&gt; row per selection giving the
+ * slot of each position, with -1 for a hidden position.  A missing or
+ * repeated row is an error.
+ *
+ * The file is parsed once by load() into the flat tables of the core
+ * TableBoundsModel.
+ */
+public class TableLayoutModel extends TableBoundsModel implements LayoutModel {
+	private final Bounds mBounds = new Bounds();
+	private final Rect mRect = new Rect();
+
+	public TableLayoutModel(float[] portrait, float[] landscape, int positions,
+			int[] slotFor, int anchor) {
+		super(portrait, landscape, positions, slotFor, anchor);
+	}
+
+	/**
+	 * called for each child (by index) to get a layout Rect.
+	 * The same Rect is handed back each time.
+	 */
+	public Rect getLayoutRect(int pos, int selected) {
+		getLayoutBounds(pos, selected, mBounds);
+		mRect.set(mBounds.left, mBounds.top, mBounds.right, mBounds.bottom);
+		return mRect;
+	}
+
+	/**
+	 * Read a layout table from an XML resource (res/xml)
+	 * @throws InflateException if the file is not a valid table
+	 */
+	public static TableLayoutModel load(Resources res, int xmlId) {
+		XmlResourceParser parser = res.getXml(xmlId);
+		try {
+			return parse(parser);
+		} catch (XmlPullParserException e) {
+			throw new InflateException(e.getMessage(), e);
+		} catch (IOException e) {
+			throw new InflateException(e.getMessage(), e);
+		} finally {
+			parser.close();
+		}
+	}
+
+	static TableLayoutModel parse(XmlPullParser parser)
+			throws XmlPullParserException, IOException {
+		ArrayList<Float> portrait = new ArrayList<Float>();
+		ArrayList<Float> landscape = new ArrayList<Float>();
+		ArrayList<Float> current = null;
+		boolean explicit = false;
+		int positions = 0;
+		int anchor = 0;
+		int[] slotFor = null;
+		boolean[] selectSeen = null;
+
+		int event = parser.getEventType();
+		while (event != XmlPullParser.END_DOCUMENT) {
+			if (event == XmlPullParser.START_TAG) {
+				String tag = parser.getName();
+				if ("layout-table".equals(tag)) {
+					String mapping = parser.getAttributeValue(null, "mapping");
+					explicit = "explicit".equals(mapping);
+					if (!explicit && (mapping != null) && !"offset".equals(mapping)) {
+						throw error(parser, "unknown mapping " + mapping);
+					}
+					anchor = intAttribute(parser, "anchor", 0);
+					positions = intAttribute(parser, "positions", 0);
+					if (explicit) {
+						if (positions <= 0) {
+							throw error(parser, "an explicit mapping needs positions");
+						}
+						slotFor = new int[positions * positions];
+						Arrays.fill(slotFor, HIDDEN);
+						selectSeen = new boolean[positions];
+					}
+				} else if ("portrait".equals(tag)) {
+					current = portrait;
+				} else if ("landscape".equals(tag)) {
+					current = landscape;
+				} else if ("slot".equals(tag)) {
+					if (current == null) {
+						throw error(parser, "slot outside portrait or landscape");
+					}
+					current.add(floatAttribute(parser, "left"));
+					current.add(floatAttribute(parser, "top"));
+					current.add(floatAttribute(parser, "right"));
+					current.add(floatAttribute(parser, "bottom"));
+				} else if ("select".equals(tag)) {
+					if (!explicit) {
+						throw error(parser, "select rows need mapping=\"explicit\"");
+					}
+					int index = intAttribute(parser, "index", -1);
+					String[] slots = stringAttribute(parser, "slots").trim().split("\\s+");
+					if ((index < 0) || (index >= positions) || (slots.length != positions)) {
+						throw error(parser, "select needs an index below " + positions
+								+ " and " + positions + " slots");
+					}
+					if (selectSeen[index]) {
+						throw error(parser, "select index " + index + " given twice");
+					}
+					selectSeen[index] = true;
+					for (int i = 0; i < positions; i++) {
+						slotFor[index * positions + i] = parseInt(parser, slots[i]);
+					}
+				}
+			} else if (event == XmlPullParser.END_TAG) {
+				String tag = parser.getName();
+				if ("portrait".equals(tag) || "landscape".equals(tag)) {
+					current = null;
+				}
+			}
+			event = parser.next();
+		}
+		if (explicit) {
+			for (int i = 0; i < positions; i++) {
+				if (!selectSeen[i]) {
+					throw error(parser, "no select row for index " + i);
+				}
+			}
+		}
+
+		try {
+			return new TableLayoutModel(toArray(portrait),
+					landscape.isEmpty() ? null : toArray(landscape),
+					positions, slotFor, anchor);
+		} catch (IllegalArgumentException e) {
+			throw new InflateException(e.getMessage(), e);
+		}
+	}
+
+	private static float[] toArray(ArrayList<Float> list) {
+		float[] a = new float[list.size()];
+		for (int i = 0; i < a.length; i++) {
+			a[i] = list.get(i);
+		}
+		return a;
+	}
+
+	private static String stringAttribute(XmlPullParser parser, String name) {
+		String value = parser.getAttributeValue(null, name);
+		if (value == null) {
+			throw error(parser, "missing " + name);
+		}
+		return value;
+	}
+
+	private static float floatAttribute(XmlPullParser parser, String name) {
+		try {
+			return Float.parseFloat(stringAttribute(parser, name));
+		} catch (NumberFormatException e) {
+			throw error(parser, name + " is not a number");
+		}
+	}
+
+	private static int intAttribute(XmlPullParser parser, String name, int defaultValue) {
+		String value = parser.getAttributeValue(null, name);
+		return (value == null) ? defaultValue : parseInt(parser, value);
+	}
+
+	private static int parseInt(XmlPullParser parser, String value) {
+		try {
+			return Integer.parseInt(value);
+		} catch (NumberFormatException e) {
+			throw error(parser, value + " is not a whole number");
+		}
+	}
+
+	private static InflateException error(XmlPullParser parser, String message) {
+		return new InflateException(parser.getPositionDescription() + ": " + message);
+	}
+}
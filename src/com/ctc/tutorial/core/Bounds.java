@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * A plain left, top, right, bottom rectangle.  This is the core's
+ * stand in for android.graphics.Rect so the layout math can run
+ * on any JVM.
+ */
+public final class Bounds {
+	public int left;
+	public int top;
+	public int right;
+	public int bottom;
+
+	public Bounds() {
+	}
+
+	public Bounds(int l, int t, int r, int b) {
+		set(l, t, r, b);
+	}
+
+	public void set(int l, int t, int r, int b) {
+		left = l;
+		top = t;
+		right = r;
+		bottom = b;
+	}
+
+	public int width() {
+		return right - left;
+	}
+
+	public int height() {
+		return bottom - top;
+	}
+
+	/**
+	 * true if x,y falls strictly inside the bounds
+	 */
+	public boolean contains(int x, int y) {
+		return (left < x) && (right > x) && (top < y) && (bottom > y);
+	}
+
+	@Override
+	public String toString() {
+		return "Bounds(" + left + ", " + top + " - " + right + ", " + bottom + ")";
+	}
+}
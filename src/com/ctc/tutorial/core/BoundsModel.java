@@ -0,0 +1,34 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * The layout model contract used by the LayoutEngine.  Same idea
+ * as com.ctc.tutorial.LayoutModel, but the model fills in a Bounds
+ * owned by the caller instead of handing back an android Rect.
+ */
+public interface BoundsModel {
+	/**
+	 * called when the parent view size changes
+	 */
+	public void onSizeChanged(int width, int height, int oldw, int oldh);
+
+	/**
+	 * called for each child (by index) to get its layout bounds
+	 */
+	public void getLayoutBounds(int pos, int selected, Bounds out);
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * The default layout: each view is a square with the selected
+ * view centered and a bit larger in a horizontal line of views.
+ */
+public class DefaultBoundsModel implements BoundsModel, StatelessModel {
+	protected int viewspacing = 20;
+
+	protected int layoutHeight=-1;
+	protected int layoutWidth=-1;
+
+	protected int focus_height;
+	protected int focus_width;
+	protected int unfocus_height;
+	protected int unfocus_width;
+
+	/**
+	 * called when the parent view size changes
+	 */
+	public void onSizeChanged(int width, int height, int oldw, int oldh) {
+		layoutHeight = height;
+		layoutWidth = width;
+
+		// try to get the child views to measure as follows
+		if (height > width) {
+			focus_height = (int) (height * .30);
+			unfocus_height = focus_height - (viewspacing *2);
+			focus_width = focus_height;
+			unfocus_width = unfocus_height;
+		} else {
+			focus_height = (int) (height * .60);
+			unfocus_height = focus_height - (viewspacing *2);
+			focus_width = focus_height;
+			unfocus_width = unfocus_height;
+		}
+	}
+
+	/**
+	 * called for each child (by index) to get its layout bounds
+	 */
+	public void getLayoutBounds(int pos, int selected, Bounds out) {
+		int s_top = layoutHeight / 2 - focus_height / 2;
+		int s_left = layoutWidth / 2 - focus_width / 2;
+
+		int t;
+		int l;
+		int b;
+		int r;
+
+		if (pos < selected) {
+			l = s_left - ((unfocus_width+viewspacing)*(selected-pos));
+			t = s_top + viewspacing;
+			r = l + unfocus_width;
+			b = t + unfocus_height;
+		} else if (pos == selected) {
+			// pos is the selected item
+			l = s_left;
+			t = s_top;
+			r = s_left + focus_width;
+			b = s_top + focus_height;
+		} else {
+			// pos > selected
+			l = s_left + focus_width + viewspacing + ((unfocus_width+viewspacing)*(pos-selected-1));
+			t = s_top + viewspacing;
+			r = l + unfocus_width;
+			b = t + unfocus_height;
+		}
+
+		out.set(l,t,r,b);
+	}
+}
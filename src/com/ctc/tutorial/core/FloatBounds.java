@@ -0,0 +1,55 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * A left, top, right, bottom rectangle in sub-pixel floats.  The
+ * core's stand in for android.graphics.RectF.
+ */
+public final class FloatBounds {
+	public float left;
+	public float top;
+	public float right;
+	public float bottom;
+
+	public FloatBounds() {
+	}
+
+	public FloatBounds(float l, float t, float r, float b) {
+		set(l, t, r, b);
+	}
+
+	public void set(float l, float t, float r, float b) {
+		left = l;
+		top = t;
+		right = r;
+		bottom = b;
+	}
+
+	public float width() {
+		return right - left;
+	}
+
+	public float height() {
+		return bottom - top;
+	}
+
+	@Override
+	public String toString() {
+		return "FloatBounds(" + left + ", " + top + " - " + right + ", " + bottom + ")";
+	}
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * A BoundsModel that can also place children at sub-pixel
+ * positions.  The LayoutEngine uses the float bounds when a model
+ * implements this, so a child whose size does not change keeps
+ * exactly the same pixel size while it moves.
+ */
+public interface FloatBoundsModel extends BoundsModel {
+	/**
+	 * called for each child (by index) to get its layout bounds
+	 */
+	public void getLayoutBounds(int pos, int selected, FloatBounds out);
+}
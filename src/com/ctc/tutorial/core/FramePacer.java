@@ -0,0 +1,118 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * Adapts how much animation work is done to what the device keeps
+ * up with.  Each step reports when it ran and how long it took.
+ * When frames are missed the pacer first asks for only the visible
+ * children to be animated, then for the update rate to be halved.
+ * After a run of good frames it steps back up again.
+ *
+ * The level is kept between animations so a slow device does not
+ * have to drop frames again at the start of every animation.
+ */
+public final class FramePacer {
+	/**
+	 * animate every child on every frame
+	 */
+	public static final int FULL = 0;
+	/**
+	 * animate only the children that are on screen
+	 */
+	public static final int VISIBLE_ONLY = 1;
+	/**
+	 * visible children only, every other frame
+	 */
+	public static final int HALF_RATE = 2;
+
+	// this many bad frames in a row drop a level
+	private static final int BAD_FRAMES_TO_DROP = 2;
+	// this many good frames in a row raise a level
+	private static final int GOOD_FRAMES_TO_RAISE = 30;
+
+	private final int mFrameMillis;
+
+	private int mLevel = FULL;
+	private float mAverageStepMillis = 0;
+	private long mLastFrameTime = -1;
+	private int mBadFrames = 0;
+	private int mGoodFrames = 0;
+
+	public FramePacer(int frameMillis) {
+		mFrameMillis = frameMillis;
+	}
+
+	/**
+	 * a new animation is starting
+	 */
+	public void start() {
+		mLastFrameTime = -1;
+		mBadFrames = 0;
+		mGoodFrames = 0;
+	}
+
+	/**
+	 * record one animation step
+	 * @param now        when the step ran, in ms
+	 * @param stepNanos  how long the step took
+	 */
+	public void frame(long now, long stepNanos) {
+		mAverageStepMillis = mAverageStepMillis * 0.8f + (stepNanos / 1000000f) * 0.2f;
+
+		boolean bad = mAverageStepMillis > mFrameMillis * 0.5f;
+		if (mLastFrameTime != -1) {
+			long expected = getDelayMillis() + mFrameMillis;
+			bad |= (now - mLastFrameTime) > expected + mFrameMillis / 2;
+		}
+		mLastFrameTime = now;
+
+		if (bad) {
+			mGoodFrames = 0;
+			if ((++mBadFrames >= BAD_FRAMES_TO_DROP) && (mLevel < HALF_RATE)) {
+				mLevel++;
+				mBadFrames = 0;
+			}
+		} else {
+			mBadFrames = 0;
+			if ((++mGoodFrames >= GOOD_FRAMES_TO_RAISE) && (mLevel > FULL)) {
+				mLevel--;
+				mGoodFrames = 0;
+			}
+		}
+	}
+
+	public int getLevel() {
+		return mLevel;
+	}
+
+	/**
+	 * how long to wait after a frame before the next step, on top
+	 * of the normal frame interval
+	 */
+	public long getDelayMillis() {
+		return (mLevel >= HALF_RATE) ? mFrameMillis : 0;
+	}
+
+	public boolean isVisibleOnly() {
+		return mLevel >= VISIBLE_ONLY;
+	}
+
+	public float getAverageStepMillis() {
+		return mAverageStepMillis;
+	}
+}
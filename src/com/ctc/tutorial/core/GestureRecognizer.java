@@ -0,0 +1,318 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * Decides what a touch stream means for the view group: a tap on
+ * a child or a fling along the scroll axis.  A drag across the
+ * scroll axis is not the group's, it is left to the parents.  The caller supplies
+ * positions and, when the finger lifts, the release velocity.
+ *
+ * Timed samples are also kept in a MotionSampler so the finger
+ * position can be predicted ahead to the next frame.
+ */
+public final class GestureRecognizer {
+	public static final int NONE = 0;
+	public static final int TAP = 1;
+	public static final int FLING_X = 2;
+	public static final int FLING_Y = 3;
+
+	/**
+	 * the axis a drag is locked to once it passes the touch slop
+	 */
+	public static final int AXIS_NONE = 0;
+	public static final int AXIS_X = 1;
+	public static final int AXIS_Y = 2;
+
+	/**
+	 * what a release does, see release()
+	 */
+	public static final int RELEASE_NONE = 0;
+	public static final int RELEASE_SELECT = 1;
+	public static final int RELEASE_ACTIVATE = 2;
+	public static final int RELEASE_PARENT_FLING = 3;
+
+	private final int mTouchSlop;
+	private final int mMinimumVelocity;
+
+	private float mLastMotionX;
+	private float mLastMotionY;
+
+	private boolean mIsBeingDragged = false;
+	private int mDragAxis = AXIS_NONE;
+	private int mScrollAxis = AXIS_X;
+	private boolean mAcross = false;
+
+	private int mFlingVelocity;
+	private int mReleaseTarget = -1;
+
+	private final MotionSampler mSampler = new MotionSampler();
+
+	public GestureRecognizer(int touchSlop, int minimumVelocity) {
+		mTouchSlop = touchSlop;
+		mMinimumVelocity = minimumVelocity;
+	}
+
+	/**
+	 * Remember where the motion event started
+	 */
+	public void down(float x, float y) {
+		mLastMotionX = x;
+		mLastMotionY = y;
+		mDragAxis = AXIS_NONE;
+		mAcross = false;
+	}
+
+	/**
+	 * Remember where the motion event started and when (uptime ms)
+	 */
+	public void down(long time, float x, float y) {
+		mSampler.reset();
+		mSampler.add(time, x, y);
+		down(x, y);
+	}
+
+	/**
+	 * Add a sample without deciding anything yet, used for the
+	 * historical samples batched into a move event
+	 */
+	public void sample(long time, float x, float y) {
+		mSampler.add(time, x, y);
+	}
+
+	/**
+	 * The newest sample of a move event, the historical ones should
+	 * have gone to sample() first
+	 * @return true if the touch is now a drag
+	 */
+	public boolean move(long time, float x, float y) {
+		mSampler.add(time, x, y);
+		return move(x, y);
+	}
+
+	/**
+	 * @return true if the touch is now a drag along the scroll axis
+	 */
+	public boolean move(float x, float y) {
+		if (mAcross) {
+			// not ours, nothing to follow until the next down
+			return false;
+		}
+		final int xDiff = (int) Math.abs(mLastMotionX - x);
+		final int yDiff = (int) Math.abs(mLastMotionY - y);
+
+		// only start a drag if enough motion has occurred
+		if (!mIsBeingDragged) {
+			if ((xDiff > mTouchSlop) || (yDiff > mTouchSlop)) {
+				// the drag stays on the axis it started along
+				final int axis = (xDiff > yDiff) ? AXIS_X : AXIS_Y;
+				if (axis == mScrollAxis) {
+					mIsBeingDragged = true;
+					mDragAxis = axis;
+				} else {
+					mAcross = true;
+				}
+			}
+		} else {
+			// This demo version does not attempt to scroll to
+			// track the active pointer.  Hint.  This is where you
+			// would implement that functionality if you so desired.
+			mLastMotionX = x;
+		}
+		return mIsBeingDragged;
+	}
+
+	/**
+	 * The active pointer changed at the given time.  The old
+	 * pointer's samples would make the new one look like it jumped,
+	 * so prediction starts over from here.
+	 */
+	public void pointerChanged(long time, float x, float y) {
+		mSampler.reset();
+		mSampler.add(time, x, y);
+		mLastMotionX = x;
+		mLastMotionY = y;
+	}
+
+	/**
+	 * where the finger is expected to be at the given time, for
+	 * a frame that will be shown after the newest sample
+	 */
+	public float getPredictedX(long time) {
+		return mSampler.size() > 0 ? mSampler.predictX(time) : mLastMotionX;
+	}
+
+	public float getPredictedY(long time) {
+		return mSampler.size() > 0 ? mSampler.predictY(time) : mLastMotionY;
+	}
+
+	public MotionSampler getSampler() {
+		return mSampler;
+	}
+
+	/**
+	 * The finger lifted.  For a drag the velocity (pixels per
+	 * second) along the locked axis decides whether it was a fling.
+	 * @return NONE, TAP, FLING_X or FLING_Y
+	 */
+	public int up(float xVelocity, float yVelocity) {
+		if (mAcross) {
+			// the parents had this one
+			return NONE;
+		}
+		if (!mIsBeingDragged) {
+			// this was a non-drag tap and release
+			return TAP;
+		}
+		mIsBeingDragged = false;
+
+		// a vertical or horizontal fling can cause action, but
+		// only along the axis the drag was locked to
+		int xv = (int) xVelocity;
+		int yv = (int) yVelocity;
+		if (mDragAxis == AXIS_X) {
+			// horizontal fling
+			if (Math.abs(xv) > mMinimumVelocity) {
+				mFlingVelocity = -xv;
+				return FLING_X;
+			}
+		} else {
+			// vertical fling
+			if (Math.abs(yv) > mMinimumVelocity) {
+				mFlingVelocity = -yv;
+				return FLING_Y;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * The finger lifted over the engine's children: decide what
+	 * happens to the selection.  The view group and the
+	 * ReplayHarness both go through here, so a replay makes the same
+	 * decisions the device does.
+	 *
+	 * - a tap on the selected child activates it, a tap on another
+	 *   child selects that one
+	 * - a drag released mostly along an axis a nested scrolling
+	 *   parent has taken motion on hands the fling to the parent
+	 * - a fling along the locked axis selects the next or previous
+	 *   child, unless an animation is still running or there is no
+	 *   such child
+	 *
+	 * @param xVelocity  release velocity, pixels per second
+	 * @param parentTookX  a nested scrolling parent took motion along x
+	 * @return RELEASE_NONE, RELEASE_SELECT or RELEASE_ACTIVATE (the
+	 *         child is getReleaseTarget()) or RELEASE_PARENT_FLING
+	 */
+	public int release(float xVelocity, float yVelocity,
+			boolean parentTookX, boolean parentTookY, LayoutEngine engine) {
+		mReleaseTarget = -1;
+		if (mIsBeingDragged) {
+			final boolean alongX = Math.abs(xVelocity) > Math.abs(yVelocity);
+			if (alongX ? parentTookX : parentTookY) {
+				cancel();
+				return RELEASE_PARENT_FLING;
+			}
+		}
+		final int selected = engine.getSelected();
+		switch (up(xVelocity, yVelocity)) {
+		case TAP:
+			// the engine knows where every child currently is, take
+			// the topmost one the point tapped lands in
+			mReleaseTarget = engine.hitTest((int) mLastMotionX, (int) mLastMotionY);
+			if (mReleaseTarget == -1) {
+				return RELEASE_NONE;
+			}
+			return (mReleaseTarget == selected) ? RELEASE_ACTIVATE : RELEASE_SELECT;
+		case FLING_X:
+		case FLING_Y:
+			// for now a fling just moves by one child
+			int next = (mFlingVelocity > 0) ? selected + 1 : selected - 1;
+			if (engine.isAnimating() || (next < 0) || (next >= engine.getCount())) {
+				return RELEASE_NONE;
+			}
+			mReleaseTarget = next;
+			return RELEASE_SELECT;
+		}
+		return RELEASE_NONE;
+	}
+
+	/**
+	 * the child the last release() selects or activates, -1 if none
+	 */
+	public int getReleaseTarget() {
+		return mReleaseTarget;
+	}
+
+	/**
+	 * the axis the group's drags go along, AXIS_X (the default) or
+	 * AXIS_Y.  A touch that turns into a drag along the other one is
+	 * never a drag here, see isDraggingAcross()
+	 */
+	public void setScrollAxis(int axis) {
+		if ((axis != AXIS_X) && (axis != AXIS_Y)) {
+			throw new IllegalArgumentException("scroll axis must be AXIS_X or AXIS_Y");
+		}
+		mScrollAxis = axis;
+	}
+
+	public int getScrollAxis() {
+		return mScrollAxis;
+	}
+
+	/**
+	 * true once the touch has passed the touch slop across the scroll
+	 * axis: it belongs to the parents, and until the next down it is
+	 * neither a drag nor a tap
+	 */
+	public boolean isDraggingAcross() {
+		return mAcross;
+	}
+
+	public void cancel() {
+		mIsBeingDragged = false;
+		mDragAxis = AXIS_NONE;
+	}
+
+	public boolean isDragging() {
+		return mIsBeingDragged;
+	}
+
+	/**
+	 * AXIS_X or AXIS_Y once the touch is a drag, otherwise AXIS_NONE
+	 */
+	public int getDragAxis() {
+		return mDragAxis;
+	}
+
+	/**
+	 * the velocity of the last fling, positive means move to the
+	 * next item
+	 */
+	public int getFlingVelocity() {
+		return mFlingVelocity;
+	}
+
+	public float getLastMotionX() {
+		return mLastMotionX;
+	}
+
+	public float getLastMotionY() {
+		return mLastMotionY;
+	}
+}
@@ -0,0 +1,649 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+import java.util.Arrays;
+
+/**
+ * The android independent part of the DynamicLayoutViewGroup.  The
+ * engine keeps track of the selected item, asks the BoundsModel
+ * where each child goes and animates the children between the
+ * old and new positions when the selection changes.
+ *
+ * The start and target of each child are kept in flat float
+ * arrays as left, top, width and height, so size and position are
+ * animated separately and a child whose size does not change keeps
+ * exactly the same pixel size on every frame.  The current positions
+ * are rounded into a flat int array, four entries (left, top, right,
+ * bottom) per child, which the view group reads back after each step
+ * and applies to its views.
+ */
+public class LayoutEngine {
+
+	private BoundsModel mModel;
+	// the same model when it works in floats, otherwise null
+	private FloatBoundsModel mFloatModel;
+	// the model, or the one behind an adapter, promises to be
+	// StatelessModel
+	private boolean mStateless;
+	// the model, or the one behind an adapter, as a ZOrderModel,
+	// otherwise null
+	private ZOrderModel mZOrderModel;
+
+	private int mCount = 0;
+	private int mSelected = 0;
+
+	// start and target left top width height for each child
+	private float[] mStart = new float[0];
+	private float[] mTarget = new float[0];
+	// current left top right bottom for each child
+	private int[] mCurrent = new int[0];
+
+	private final Bounds mScratch = new Bounds();
+	private final FloatBounds mFloatScratch = new FloatBounds();
+	private final float[] mEdges = new float[4];
+
+	/**
+	 * Variables used in controlling the animation
+	 */
+	private boolean mAnimating = false;
+	private long mStartTime = -1;
+	private int mDuration = 500;
+	private Easing mEasing = new OvershootEasing();
+
+	private long mModelCalls = 0;
+
+	/**
+	 * The area the children are shown in.  With mVisibleOnly set only
+	 * the children that start or end inside it are animated, the rest
+	 * jump straight to their target.
+	 */
+	private int mViewportWidth = 0;
+	private int mViewportHeight = 0;
+	private boolean mVisibleOnly = false;
+	private int[] mVisible = new int[0];
+	private int mVisibleCount = 0;
+
+	/**
+	 * The order children are drawn in, bottom first, worked out once
+	 * per selection change.  Hit testing uses the same order.
+	 */
+	private int[] mDrawOrder = new int[0];
+	private long[] mZKeys = new long[0];
+	private int mDrawOrderSelected = -1;
+	private int mDrawOrderCount = -1;
+
+	public LayoutEngine(BoundsModel model) {
+		setModel(model);
+	}
+
+	public void setModel(BoundsModel model) {
+		mModel = model;
+		mFloatModel = (model instanceof FloatBoundsModel) ? (FloatBoundsModel) model : null;
+		Object unwrapped = unwrap(model);
+		mStateless = unwrapped instanceof StatelessModel;
+		mZOrderModel = (unwrapped instanceof ZOrderModel) ? (ZOrderModel) unwrapped : null;
+		mDrawOrderCount = -1;
+	}
+
+	/**
+	 * the model behind any adapters, that is the one whose
+	 * capabilities count
+	 */
+	private static Object unwrap(BoundsModel model) {
+		Object m = model;
+		while (m instanceof ModelWrapper) {
+			m = ((ModelWrapper) m).getWrappedModel();
+		}
+		return m;
+	}
+
+	/**
+	 * true if the model may be asked about other selections, see
+	 * StatelessModel.  Only then does collectVisible() predict.
+	 */
+	public boolean isModelStateless() {
+		return mStateless;
+	}
+
+	public BoundsModel getModel() {
+		return mModel;
+	}
+
+	/**
+	 * set the easing used when animating between layouts, null
+	 * for a straight line
+	 */
+	public void setEasing(Easing easing) {
+		mEasing = easing;
+	}
+
+	public Easing getEasing() {
+		return mEasing;
+	}
+
+	public void setDuration(int millis) {
+		mDuration = millis;
+	}
+
+	public int getDuration() {
+		return mDuration;
+	}
+
+	/**
+	 * tell the engine how many children there are, the position
+	 * arrays only grow.  Children removed in the middle of an
+	 * animation drop out of the visible list, it is in index order
+	 */
+	public void setCount(int count) {
+		if (count * 4 > mCurrent.length) {
+			mStart = grow(mStart, count * 4);
+			mTarget = grow(mTarget, count * 4);
+			mCurrent = grow(mCurrent, count * 4);
+			mVisible = grow(mVisible, count);
+			mDrawOrder = grow(mDrawOrder, count);
+		}
+		while ((mVisibleCount > 0) && (mVisible[mVisibleCount - 1] >= count)) {
+			mVisibleCount--;
+		}
+		mCount = count;
+	}
+
+	/**
+	 * Give back array space held for children that are gone.
+	 */
+	public void trimToCount() {
+		if (mCurrent.length > mCount * 4) {
+			mStart = shrink(mStart, mCount * 4);
+			mTarget = shrink(mTarget, mCount * 4);
+			mCurrent = shrink(mCurrent, mCount * 4);
+			mVisible = shrink(mVisible, mCount);
+			mDrawOrder = shrink(mDrawOrder, mCount);
+		}
+		// only needed while the draw order is worked out
+		mZKeys = new long[0];
+	}
+
+	/**
+	 * bytes held by the position, visibility and ordering arrays
+	 */
+	public long getRetainedBytes() {
+		return 4L * (mStart.length + mTarget.length + mCurrent.length
+				+ mVisible.length + mDrawOrder.length) + 8L * mZKeys.length;
+	}
+
+	private static int[] shrink(int[] old, int size) {
+		int[] a = new int[size];
+		System.arraycopy(old, 0, a, 0, size);
+		return a;
+	}
+
+	private static float[] shrink(float[] old, int size) {
+		float[] a = new float[size];
+		System.arraycopy(old, 0, a, 0, size);
+		return a;
+	}
+
+	private static int[] grow(int[] old, int size) {
+		int[] a = new int[size];
+		System.arraycopy(old, 0, a, 0, old.length);
+		return a;
+	}
+
+	private static float[] grow(float[] old, int size) {
+		float[] a = new float[size];
+		System.arraycopy(old, 0, a, 0, old.length);
+		return a;
+	}
+
+	public int getCount() {
+		return mCount;
+	}
+
+	public int getSelected() {
+		return mSelected;
+	}
+
+	/**
+	 * set the selected item without animating, call settle() to
+	 * update the positions
+	 */
+	public void setSelected(int selected) {
+		mSelected = selected;
+	}
+
+	public boolean isAnimating() {
+		return mAnimating;
+	}
+
+	/**
+	 * number of times the model has been asked for bounds
+	 */
+	public long getModelCalls() {
+		return mModelCalls;
+	}
+
+	public void sizeChanged(int width, int height, int oldw, int oldh) {
+		mViewportWidth = width;
+		mViewportHeight = height;
+		mModel.onSizeChanged(width, height, oldw, oldh);
+		// the z order may depend on the size (orientation) too
+		mDrawOrderCount = -1;
+	}
+
+	/**
+	 * Only animate the children that are on screen at the start or
+	 * end of the animation, the others are moved to their target
+	 * straight away.  Saves work with lots of children.
+	 * @return true if the setting changed, in which case every
+	 *         child may have moved
+	 */
+	public boolean setAnimateVisibleOnly(boolean visibleOnly) {
+		if (visibleOnly == mVisibleOnly) {
+			return false;
+		}
+		mVisibleOnly = visibleOnly;
+		if (visibleOnly && mAnimating) {
+			// snap the children that are no longer animated
+			for (int i = 0; i < mCount; i++) {
+				if (!isVisible(i)) {
+					setCurrent(i * 4, mTarget);
+				}
+			}
+		}
+		return true;
+	}
+
+	public boolean isAnimatingVisibleOnly() {
+		return mVisibleOnly;
+	}
+
+	/**
+	 * true if the child starts or ends the current animation inside
+	 * the viewport.  Without a viewport everything is visible.
+	 */
+	private boolean isVisible(int pos) {
+		if ((mViewportWidth <= 0) || (mViewportHeight <= 0)) {
+			return true;
+		}
+		int o = pos * 4;
+		return intersects(mStart, o) || intersects(mTarget, o);
+	}
+
+	private boolean intersects(float[] r, int o) {
+		return (r[o] < mViewportWidth) && (r[o] + r[o + 2] > 0)
+				&& (r[o + 1] < mViewportHeight) && (r[o + 1] + r[o + 3] > 0);
+	}
+
+	/**
+	 * Predict which children would be on screen if the given item
+	 * were selected, by asking the model.  Only positions from..to
+	 * are checked.  Positions not already in out[0..n) are appended.
+	 *
+	 * Any other selection than the current one is only asked about
+	 * when the model is a StatelessModel, a model that keeps state
+	 * per selection could be disturbed by the question.  Otherwise
+	 * nothing is added.
+	 * @return the new number of entries in out
+	 */
+	public int collectVisible(int selected, int from, int to, int[] out, int n) {
+		if (!mStateless && (selected != mSelected)) {
+			return n;
+		}
+		final float[] b = mEdges;
+		from = Math.max(from, 0);
+		to = Math.min(to, mCount - 1);
+		for (int pos = from; pos <= to; pos++) {
+			fetch(pos, selected, b, 0);
+			if (intersects(b, 0)) {
+				boolean seen = false;
+				for (int i = 0; i < n; i++) {
+					if (out[i] == pos) {
+						seen = true;
+						break;
+					}
+				}
+				if (!seen && (n < out.length)) {
+					out[n++] = pos;
+				}
+			}
+		}
+		return n;
+	}
+
+	/**
+	 * number of children moved by each animation step, all of them
+	 * unless only visible children are animated
+	 */
+	public int getAnimatedCount() {
+		return mVisibleOnly ? mVisibleCount : mCount;
+	}
+
+	/**
+	 * the child index of the k'th animated child
+	 */
+	public int getAnimatedChild(int k) {
+		return mVisibleOnly ? mVisible[k] : k;
+	}
+
+	/**
+	 * ask the model for the bounds of one child at the current
+	 * selection, rounded to pixels the same way as the animation
+	 */
+	public void getLayoutBounds(int pos, Bounds out) {
+		final float[] b = mEdges;
+		fetch(pos, mSelected, b, 0);
+		round(b, 0, out);
+	}
+
+	/**
+	 * ask the model where a child goes and store it as left, top,
+	 * width, height at dst[o]
+	 */
+	private void fetch(int pos, int selected, float[] dst, int o) {
+		mModelCalls++;
+		if (mFloatModel != null) {
+			final FloatBounds f = mFloatScratch;
+			mFloatModel.getLayoutBounds(pos, selected, f);
+			dst[o] = f.left;
+			dst[o + 1] = f.top;
+			dst[o + 2] = f.right - f.left;
+			dst[o + 3] = f.bottom - f.top;
+		} else {
+			final Bounds b = mScratch;
+			mModel.getLayoutBounds(pos, selected, b);
+			dst[o] = b.left;
+			dst[o + 1] = b.top;
+			dst[o + 2] = b.right - b.left;
+			dst[o + 3] = b.bottom - b.top;
+		}
+	}
+
+	/**
+	 * Round a left, top, width, height to pixels.  The size is
+	 * rounded on its own, not worked out from two separately
+	 * rounded edges, so a constant size stays constant while the
+	 * position moves.
+	 */
+	private static void round(float[] r, int o, Bounds out) {
+		int left = Math.round(r[o]);
+		int top = Math.round(r[o + 1]);
+		out.set(left, top, left + Math.round(r[o + 2]), top + Math.round(r[o + 3]));
+	}
+
+	/**
+	 * set the current position of the child at offset o from
+	 * a left, top, width, height
+	 */
+	private void setCurrent(int o, float[] r) {
+		final int[] c = mCurrent;
+		int left = Math.round(r[o]);
+		int top = Math.round(r[o + 1]);
+		c[o] = left;
+		c[o + 1] = top;
+		c[o + 2] = left + Math.round(r[o + 2]);
+		c[o + 3] = top + Math.round(r[o + 3]);
+	}
+
+	/**
+	 * Lay the children out at their final positions for the current
+	 * selection.  This is also the start position for the next
+	 * animation.
+	 */
+	public void settle() {
+		for (int i = 0; i < mCount; i++) {
+			int o = i * 4;
+			fetch(i, mSelected, mTarget, o);
+			setCurrent(o, mTarget);
+		}
+		System.arraycopy(mTarget, 0, mStart, 0, mCount * 4);
+		updateDrawOrder();
+	}
+
+	/**
+	 * Settle on positions that were computed elsewhere (for example
+	 * restored from saved state) without asking the model
+	 */
+	public void settle(int[] rects) {
+		System.arraycopy(rects, 0, mCurrent, 0, mCount * 4);
+		final float[] t = mTarget;
+		for (int o = 0; o < mCount * 4; o += 4) {
+			t[o] = rects[o];
+			t[o + 1] = rects[o + 1];
+			t[o + 2] = rects[o + 2] - rects[o];
+			t[o + 3] = rects[o + 3] - rects[o + 1];
+		}
+		System.arraycopy(mTarget, 0, mStart, 0, mCount * 4);
+		updateDrawOrder();
+	}
+
+	/**
+	 * Work out the drawing order if the selection or the number of
+	 * children changed since the last time
+	 */
+	private void updateDrawOrder() {
+		if ((mDrawOrderSelected == mSelected) && (mDrawOrderCount == mCount)) {
+			return;
+		}
+		mDrawOrderSelected = mSelected;
+		mDrawOrderCount = mCount;
+
+		final int[] order = mDrawOrder;
+		final ZOrderModel z = mZOrderModel;
+		if (z != null) {
+			// sort by z then index, packed into one primitive key
+			if (mZKeys.length < mCount) {
+				mZKeys = new long[mDrawOrder.length];
+			}
+			final long[] keys = mZKeys;
+			for (int i = 0; i < mCount; i++) {
+				keys[i] = ((long) z.getZOrder(i, mSelected) << 32) | i;
+			}
+			Arrays.sort(keys, 0, mCount);
+			for (int i = 0; i < mCount; i++) {
+				order[i] = (int) keys[i];
+			}
+		} else {
+			// index order with the selected child on top
+			int n = 0;
+			for (int i = 0; i < mCount; i++) {
+				if (i != mSelected) {
+					order[n++] = i;
+				}
+			}
+			if (n < mCount) {
+				order[n] = mSelected;
+			}
+		}
+	}
+
+	/**
+	 * the child to draw at step i, bottom first
+	 */
+	public int getDrawingChild(int i) {
+		if (mDrawOrderCount != mCount) {
+			updateDrawOrder();
+		}
+		return mDrawOrder[i];
+	}
+
+	/**
+	 * Attempt to set the selected child and start animating to the
+	 * new layout.  If animation is happening or the target child
+	 * is invalid, do nothing
+	 * @return true if an animation was started
+	 */
+	public boolean moveTo(int index) {
+		if (mAnimating || (index == mSelected) || (index < 0) || (index >= mCount)) {
+			return false;
+		}
+		mSelected = index;
+
+		// the current position is already stored away as the
+		// start, gather the target positions for the new selection
+		for (int i = 0; i < mCount; i++) {
+			fetch(i, index, mTarget, i * 4);
+		}
+
+		// remember which children are on screen for this animation
+		int visible = 0;
+		for (int i = 0; i < mCount; i++) {
+			if (isVisible(i)) {
+				mVisible[visible++] = i;
+			} else if (mVisibleOnly) {
+				setCurrent(i * 4, mTarget);
+			}
+		}
+		mVisibleCount = visible;
+		updateDrawOrder();
+
+		mAnimating = true;
+		mStartTime = -1;
+		return true;
+	}
+
+	/**
+	 * Start the running animation at a given time instead of on its
+	 * first step, so several engines can move in step
+	 */
+	public void setStartTime(long time) {
+		if (mAnimating) {
+			mStartTime = time;
+		}
+	}
+
+	/**
+	 * Advance the animation to the given time.  The first step after
+	 * moveTo() marks the start of the animation.  Once the duration
+	 * has passed the children are settled at their final positions.
+	 *
+	 * @param now  time in milliseconds
+	 * @return true if the animation needs more steps
+	 */
+	public boolean step(long now) {
+		if (!mAnimating) {
+			return false;
+		}
+		if (mStartTime == -1) {
+			mStartTime = now;
+		}
+		long elapsed = now - mStartTime;
+		if (elapsed < mDuration) {
+			layoutAtTime((float) elapsed / (float) mDuration);
+			return true;
+		}
+		// the animation duration is passed, set the final locations
+		mAnimating = false;
+		mStartTime = -1;
+		settle();
+		return false;
+	}
+
+	/**
+	 * layoutAtTime is called with a value that represents the
+	 * current time between the start of the animation and when it
+	 * should end as a percentage (value from 0 to 1.0)
+	 *
+	 * Using this value we simply determine where we are on a straight line
+	 * between the start and end point, after the easing has tweaked
+	 * the timeslice value.  Position and size are interpolated in
+	 * floats and rounded once each, so a child that keeps its size
+	 * keeps it exactly on every frame.
+	 *
+	 * @param t_req  the current timeslice %
+	 */
+	public void layoutAtTime(float t_req) {
+		float t = (mEasing != null) ? mEasing.ease(t_req) : t_req;
+
+		if (mVisibleOnly) {
+			final int[] visible = mVisible;
+			for (int k = 0; k < mVisibleCount; k++) {
+				interpolate(visible[k] * 4, t);
+			}
+		} else {
+			final int n = mCount * 4;
+			for (int o = 0; o < n; o += 4) {
+				interpolate(o, t);
+			}
+		}
+	}
+
+	private void interpolate(int o, float t) {
+		final float[] s = mStart;
+		final float[] e = mTarget;
+		final int[] c = mCurrent;
+		int left = Math.round(s[o] + (e[o] - s[o]) * t);
+		int top = Math.round(s[o + 1] + (e[o + 1] - s[o + 1]) * t);
+		// the size is rounded on its own, an unchanged size comes
+		// out the same whatever the easing does to t
+		c[o] = left;
+		c[o + 1] = top;
+		c[o + 2] = left + Math.round(s[o + 2] + (e[o + 2] - s[o + 2]) * t);
+		c[o + 3] = top + Math.round(s[o + 3] + (e[o + 3] - s[o + 3]) * t);
+	}
+
+	/**
+	 * Find the child under x,y at their current positions.  The
+	 * children drawn on top are checked first.
+	 * @return the child index or -1
+	 */
+	public int hitTest(int x, int y) {
+		final int[] c = mCurrent;
+		if (mDrawOrderCount != mCount) {
+			updateDrawOrder();
+		}
+		for (int k = mCount - 1; k >= 0; k--) {
+			int i = mDrawOrder[k];
+			int o = i * 4;
+			if ((c[o] < x) && (c[o + 2] > x) && (c[o + 1] < y) && (c[o + 3] > y)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	public int getLeft(int pos) {
+		return mCurrent[pos * 4];
+	}
+
+	public int getTop(int pos) {
+		return mCurrent[pos * 4 + 1];
+	}
+
+	public int getRight(int pos) {
+		return mCurrent[pos * 4 + 2];
+	}
+
+	public int getBottom(int pos) {
+		return mCurrent[pos * 4 + 3];
+	}
+
+	/**
+	 * the bounds a child is heading to (its final position when
+	 * not animating)
+	 */
+	public void getTargetBounds(int pos, Bounds out) {
+		round(mTarget, pos * 4, out);
+	}
+
+	/**
+	 * the current positions, four entries per child.  Do not modify.
+	 */
+	public int[] getCurrentRects() {
+		return mCurrent;
+	}
+}
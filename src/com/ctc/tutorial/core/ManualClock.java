@@ -0,0 +1,40 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * A FrameClock that only moves when told to
+ */
+public final class ManualClock implements FrameClock {
+	private long mNow;
+
+	public ManualClock(long start) {
+		mNow = start;
+	}
+
+	public void set(long now) {
+		mNow = now;
+	}
+
+	public void advance(long millis) {
+		mNow += millis;
+	}
+
+	public long uptimeMillis() {
+		return mNow;
+	}
+}
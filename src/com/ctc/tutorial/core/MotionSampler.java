@@ -0,0 +1,188 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * Keeps the last few samples of the active pointer, including the
+ * historical samples batched into each move event, and uses them
+ * to estimate the pointer velocity and where the finger will be at
+ * the next frame.
+ *
+ * The samples live in a small ring of primitive arrays so feeding
+ * it from the touch path does not allocate.
+ */
+public final class MotionSampler {
+	/**
+	 * how many samples are kept
+	 */
+	public static final int CAPACITY = 16;
+
+	/**
+	 * samples older than this (ms) before the newest one are not
+	 * used for the velocity estimate
+	 */
+	public static final int HORIZON_MILLIS = 50;
+
+	/**
+	 * never predict further ahead of the newest sample than this
+	 * (ms), past about a frame the guess overshoots more than it helps
+	 */
+	public static final int MAX_PREDICTION_MILLIS = 20;
+
+	private final long[] mTimes = new long[CAPACITY];
+	private final float[] mX = new float[CAPACITY];
+	private final float[] mY = new float[CAPACITY];
+	private int mNewest = -1;
+	private int mSize = 0;
+
+	// velocity in pixels per ms, worked out when first asked for
+	private boolean mVelocityDirty = true;
+	private float mVelocityX;
+	private float mVelocityY;
+
+	/**
+	 * forget all samples, for a new gesture or a new active pointer
+	 */
+	public void reset() {
+		mNewest = -1;
+		mSize = 0;
+		mVelocityDirty = true;
+	}
+
+	/**
+	 * add a sample, samples must arrive in time order and one
+	 * with the same time as the newest replaces it
+	 */
+	public void add(long time, float x, float y) {
+		if ((mSize > 0) && (time <= mTimes[mNewest])) {
+			mX[mNewest] = x;
+			mY[mNewest] = y;
+		} else {
+			mNewest = (mNewest + 1) % CAPACITY;
+			mTimes[mNewest] = time;
+			mX[mNewest] = x;
+			mY[mNewest] = y;
+			if (mSize < CAPACITY) {
+				mSize++;
+			}
+		}
+		mVelocityDirty = true;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public float getLastX() {
+		return mX[mNewest];
+	}
+
+	public float getLastY() {
+		return mY[mNewest];
+	}
+
+	public long getLastTime() {
+		return mTimes[mNewest];
+	}
+
+	/**
+	 * @return pixels per second along x
+	 */
+	public float getVelocityX() {
+		computeVelocity();
+		return mVelocityX * 1000;
+	}
+
+	/**
+	 * @return pixels per second along y
+	 */
+	public float getVelocityY() {
+		computeVelocity();
+		return mVelocityY * 1000;
+	}
+
+	/**
+	 * where the pointer is expected to be at the given time
+	 * (uptime ms), the newest sample if there is too little
+	 * history to say
+	 */
+	public float predictX(long time) {
+		if (mSize == 0) {
+			return 0;
+		}
+		computeVelocity();
+		return mX[mNewest] + mVelocityX * lead(time);
+	}
+
+	public float predictY(long time) {
+		if (mSize == 0) {
+			return 0;
+		}
+		computeVelocity();
+		return mY[mNewest] + mVelocityY * lead(time);
+	}
+
+	private long lead(long time) {
+		long lead = time - mTimes[mNewest];
+		if (lead <= 0) {
+			return 0;
+		}
+		return lead < MAX_PREDICTION_MILLIS ? lead : MAX_PREDICTION_MILLIS;
+	}
+
+	/**
+	 * least squares fit of a straight line through the recent
+	 * samples, a plain difference of two samples is too noisy at
+	 * the sample rates touch screens deliver
+	 */
+	private void computeVelocity() {
+		if (!mVelocityDirty) {
+			return;
+		}
+		mVelocityDirty = false;
+		mVelocityX = 0;
+		mVelocityY = 0;
+
+		final long newest = (mSize > 0) ? mTimes[mNewest] : 0;
+		int n = 0;
+		float st = 0, sx = 0, sy = 0, stt = 0, stx = 0, sty = 0;
+		for (int k = 0; k < mSize; k++) {
+			int i = (mNewest - k + CAPACITY) % CAPACITY;
+			// time relative to the newest sample keeps the sums small
+			float t = mTimes[i] - newest;
+			if (t < -HORIZON_MILLIS) {
+				break;
+			}
+			n++;
+			st += t;
+			sx += mX[i];
+			sy += mY[i];
+			stt += t * t;
+			stx += t * mX[i];
+			sty += t * mY[i];
+		}
+		if (n < 2) {
+			return;
+		}
+		float denominator = n * stt - st * st;
+		if (denominator == 0) {
+			return;
+		}
+		mVelocityX = (n * stx - st * sx) / denominator;
+		mVelocityY = (n * sty - st * sy) / denominator;
+	}
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * Goes past the target and then settles back, using the same
+ * curve as android's OvershootInterpolator
+ */
+public final class OvershootEasing implements Easing {
+	private final float mTension;
+
+	public OvershootEasing() {
+		this(2.0f);
+	}
+
+	public OvershootEasing(float tension) {
+		mTension = tension;
+	}
+
+	public float ease(float t) {
+		t -= 1.0f;
+		return t * t * ((mTension + 1) * t + mTension) + 1.0f;
+	}
+}
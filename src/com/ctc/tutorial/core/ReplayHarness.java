@@ -0,0 +1,184 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * Replays a TouchTrace against a LayoutEngine with a ManualClock so
+ * that the same interaction always produces the same frames.  The
+ * touches go through the same GestureRecognizer the view group
+ * uses, and the animation is stepped once per frame interval just
+ * like the view group's layout loop.
+ *
+ * The Result holds the per-frame step times, the model calls, what
+ * happened to the selection and the final positions, so two engine
+ * or model versions can be compared on an identical workload.
+ */
+public final class ReplayHarness {
+
+	private final LayoutEngine mEngine;
+	private final GestureRecognizer mGestures;
+	private final ManualClock mClock;
+	private final int mFrameMillis;
+	private final int mMaximumVelocity;
+
+	public ReplayHarness(LayoutEngine engine, GestureRecognizer gestures,
+			ManualClock clock, int frameMillis, int maximumVelocity) {
+		mEngine = engine;
+		mGestures = gestures;
+		mClock = clock;
+		mFrameMillis = frameMillis;
+		mMaximumVelocity = maximumVelocity;
+	}
+
+	public static final class Result {
+		public int frames;
+		public long[] frameNanos;
+		public long modelCalls;
+		public int selectionChanges;
+		public int activations;
+		public int flings;
+		public int taps;
+		public int finalSelected;
+		public int[] finalRects;
+
+		/**
+		 * total of the per-frame step times
+		 */
+		public long totalFrameNanos() {
+			long total = 0;
+			for (int i = 0; i < frames; i++) {
+				total += frameNanos[i];
+			}
+			return total;
+		}
+	}
+
+	public Result run(TouchTrace trace) {
+		Result result = new Result();
+		result.frameNanos = new long[64];
+		long modelCallsAtStart = mEngine.getModelCalls();
+
+		long nextFrame = mClock.uptimeMillis();
+		for (int i = 0; i < trace.size(); i++) {
+			// run the frames due before this touch sample
+			nextFrame = runFramesUntil(trace.getTime(i), nextFrame, result);
+			mClock.set(trace.getTime(i));
+
+			float x = trace.getX(i);
+			float y = trace.getY(i);
+			switch (trace.getAction(i)) {
+			case TouchTrace.DOWN:
+				mGestures.down(trace.getTime(i), x, y);
+				break;
+			case TouchTrace.MOVE:
+				mGestures.move(trace.getTime(i), x, y);
+				break;
+			case TouchTrace.UP:
+				handleUp(trace.getTime(i), x, y, result);
+				break;
+			case TouchTrace.CANCEL:
+				mGestures.cancel();
+				break;
+			}
+		}
+
+		// let any animation that is still going finish
+		while (mEngine.isAnimating()) {
+			mClock.set(nextFrame);
+			frame(result);
+			nextFrame += mFrameMillis;
+		}
+
+		result.modelCalls = mEngine.getModelCalls() - modelCallsAtStart;
+		result.finalSelected = mEngine.getSelected();
+		result.finalRects = new int[mEngine.getCount() * 4];
+		System.arraycopy(mEngine.getCurrentRects(), 0, result.finalRects, 0,
+				result.finalRects.length);
+		return result;
+	}
+
+	private long runFramesUntil(long time, long nextFrame, Result result) {
+		while (nextFrame <= time) {
+			if (mEngine.isAnimating()) {
+				mClock.set(nextFrame);
+				frame(result);
+			}
+			nextFrame += mFrameMillis;
+		}
+		return nextFrame;
+	}
+
+	private void frame(Result result) {
+		long start = System.nanoTime();
+		mEngine.step(mClock.uptimeMillis());
+		long took = System.nanoTime() - start;
+		if (result.frames == result.frameNanos.length) {
+			long[] a = new long[result.frames * 2];
+			System.arraycopy(result.frameNanos, 0, a, 0, result.frames);
+			result.frameNanos = a;
+		}
+		result.frameNanos[result.frames++] = took;
+	}
+
+	/**
+	 * the release velocity comes from the gesture's MotionSampler and
+	 * the decision from GestureRecognizer.release(), as on the device
+	 */
+	private void handleUp(long time, float x, float y, Result result) {
+		float xVelocity = 0;
+		float yVelocity = 0;
+		if (mGestures.isDragging()) {
+			mGestures.sample(time, x, y);
+			MotionSampler sampler = mGestures.getSampler();
+			xVelocity = clamp(sampler.getVelocityX());
+			yVelocity = clamp(sampler.getVelocityY());
+		} else {
+			result.taps++;
+		}
+		final boolean dragging = mGestures.isDragging();
+		// a replay has no nested scrolling parent
+		switch (mGestures.release(xVelocity, yVelocity, false, false, mEngine)) {
+		case GestureRecognizer.RELEASE_SELECT:
+			if (dragging) {
+				result.flings++;
+			}
+			select(mGestures.getReleaseTarget(), result);
+			break;
+		case GestureRecognizer.RELEASE_ACTIVATE:
+			result.activations++;
+			break;
+		}
+	}
+
+	private void select(int index, Result result) {
+		if (mEngine.moveTo(index)) {
+			result.selectionChanges++;
+			// the view group lays out straight away when a move starts
+			frame(result);
+		}
+	}
+
+	private float clamp(float v) {
+		if (v > mMaximumVelocity) {
+			return mMaximumVelocity;
+		}
+		if (v < -mMaximumVelocity) {
+			return -mMaximumVelocity;
+		}
+		return v;
+	}
+}
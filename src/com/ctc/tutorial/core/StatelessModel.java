@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * A BoundsModel that also implements this promises its bounds
+ * depend on nothing but the position, the selection and the size,
+ * so it may be asked about selections other than the current one
+ * without changing what it answers for the current one.  The engine
+ * only predicts layouts (for prefetching) with such models.
+ *
+ * Subclasses of a stateless model must keep the promise.
+ */
+public interface StatelessModel {
+}
@@ -0,0 +1,148 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * A layout model driven by tables instead of code.  The layout is
+ * a set of slots, each given as fractions of the view width and
+ * height, with one set for portrait and one for landscape.  A
+ * mapping says which slot each position goes in for each selected
+ * item, either as an explicit table or as an offset from an anchor
+ * slot (the selected item goes in the anchor, its neighbours in the
+ * slots either side).
+ *
+ * The tables are flattened into primitive arrays when the model is
+ * built and turned into pixels once per size change, so every
+ * getLayoutBounds call is a couple of array reads.  The pixels are
+ * kept unrounded for the engine's sub-pixel path.
+ */
+public class TableBoundsModel implements FloatBoundsModel, StatelessModel {
+
+	/**
+	 * slot value for a position that is not shown
+	 */
+	public static final int HIDDEN = -1;
+
+	// off screen bounds for hidden positions
+	private static final int HIDDEN_LEFT = -10;
+	private static final int HIDDEN_TOP = -10;
+	private static final int HIDDEN_RIGHT = -9;
+	private static final int HIDDEN_BOTTOM = -9;
+
+	private final float[] mPortrait;
+	private final float[] mLandscape;
+	private final int mPositions;
+	private final int[] mSlotFor;
+	private final int mAnchor;
+
+	// pixel left, top, right, bottom of each slot at the current size
+	private float[] mSlots = new float[0];
+	private int mSlotCount = 0;
+
+	/**
+	 * @param portrait   left, top, right, bottom fractions for each slot
+	 *                   when height > width
+	 * @param landscape  the same for width >= height, null to use the
+	 *                   portrait slots
+	 * @param positions  number of positions the explicit mapping covers
+	 * @param slotFor    explicit mapping, entry selected*positions+pos is
+	 *                   the slot for pos (or HIDDEN), null for an offset
+	 *                   mapping
+	 * @param anchor     for an offset mapping, the slot of the selected item
+	 */
+	public TableBoundsModel(float[] portrait, float[] landscape, int positions,
+			int[] slotFor, int anchor) {
+		if ((portrait == null) || (portrait.length == 0) || (portrait.length % 4 != 0)) {
+			throw new IllegalArgumentException("portrait slots must be groups of four fractions");
+		}
+		if (landscape == null) {
+			landscape = portrait;
+		} else if (landscape.length % 4 != 0) {
+			throw new IllegalArgumentException("landscape slots must be groups of four fractions");
+		}
+		int slots = Math.min(portrait.length, landscape.length) / 4;
+		if (slotFor != null) {
+			if (slotFor.length != positions * positions) {
+				throw new IllegalArgumentException("mapping needs a row of "
+						+ positions + " slots for each of " + positions + " selections");
+			}
+			for (int s : slotFor) {
+				if ((s < HIDDEN) || (s >= slots)) {
+					throw new IllegalArgumentException("mapping uses slot " + s
+							+ " but there are only " + slots);
+				}
+			}
+		} else if ((anchor < 0) || (anchor >= slots)) {
+			throw new IllegalArgumentException("anchor slot " + anchor
+					+ " out of range, there are " + slots);
+		}
+		mPortrait = portrait;
+		mLandscape = landscape;
+		mPositions = positions;
+		mSlotFor = slotFor;
+		mAnchor = anchor;
+	}
+
+	public void onSizeChanged(int width, int height, int oldw, int oldh) {
+		final float[] f = (height > width) ? mPortrait : mLandscape;
+		if (mSlots.length != f.length) {
+			mSlots = new float[f.length];
+		}
+		for (int i = 0; i < f.length; i += 4) {
+			mSlots[i] = f[i] * width;
+			mSlots[i + 1] = f[i + 1] * height;
+			mSlots[i + 2] = f[i + 2] * width;
+			mSlots[i + 3] = f[i + 3] * height;
+		}
+		mSlotCount = f.length / 4;
+	}
+
+	/**
+	 * the slot a position goes in for a selected item, or HIDDEN
+	 */
+	public int getSlot(int pos, int selected) {
+		if (mSlotFor != null) {
+			if ((pos < 0) || (pos >= mPositions) || (selected < 0) || (selected >= mPositions)) {
+				return HIDDEN;
+			}
+			return mSlotFor[selected * mPositions + pos];
+		}
+		int slot = mAnchor + pos - selected;
+		return ((slot >= 0) && (slot < mSlotCount)) ? slot : HIDDEN;
+	}
+
+	public void getLayoutBounds(int pos, int selected, Bounds out) {
+		int slot = getSlot(pos, selected);
+		if ((slot == HIDDEN) || (slot >= mSlotCount)) {
+			out.set(HIDDEN_LEFT, HIDDEN_TOP, HIDDEN_RIGHT, HIDDEN_BOTTOM);
+		} else {
+			int o = slot * 4;
+			out.set(Math.round(mSlots[o]), Math.round(mSlots[o + 1]),
+					Math.round(mSlots[o + 2]), Math.round(mSlots[o + 3]));
+		}
+	}
+
+	public void getLayoutBounds(int pos, int selected, FloatBounds out) {
+		int slot = getSlot(pos, selected);
+		if ((slot == HIDDEN) || (slot >= mSlotCount)) {
+			out.set(HIDDEN_LEFT, HIDDEN_TOP, HIDDEN_RIGHT, HIDDEN_BOTTOM);
+		} else {
+			int o = slot * 4;
+			out.set(mSlots[o], mSlots[o + 1], mSlots[o + 2], mSlots[o + 3]);
+		}
+	}
+}
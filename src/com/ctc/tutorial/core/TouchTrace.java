@@ -0,0 +1,126 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * A recorded stream of single pointer touch samples.  Samples are
+ * kept in parallel primitive arrays.
+ *
+ * The text form is one sample per line,
+ *
+ *   time action x y
+ *
+ * where time is in milliseconds and action is down, move, up or
+ * cancel.  Blank lines and lines starting with # are skipped.
+ */
+public final class TouchTrace {
+	public static final int DOWN = 0;
+	public static final int UP = 1;
+	public static final int MOVE = 2;
+	public static final int CANCEL = 3;
+
+	private int mSize = 0;
+	private long[] mTimes = new long[16];
+	private int[] mActions = new int[16];
+	private float[] mX = new float[16];
+	private float[] mY = new float[16];
+
+	public void add(long time, int action, float x, float y) {
+		if (mSize == mTimes.length) {
+			int n = mSize * 2;
+			long[] times = new long[n];
+			int[] actions = new int[n];
+			float[] xs = new float[n];
+			float[] ys = new float[n];
+			System.arraycopy(mTimes, 0, times, 0, mSize);
+			System.arraycopy(mActions, 0, actions, 0, mSize);
+			System.arraycopy(mX, 0, xs, 0, mSize);
+			System.arraycopy(mY, 0, ys, 0, mSize);
+			mTimes = times;
+			mActions = actions;
+			mX = xs;
+			mY = ys;
+		}
+		mTimes[mSize] = time;
+		mActions[mSize] = action;
+		mX[mSize] = x;
+		mY[mSize] = y;
+		mSize++;
+	}
+
+	public int size() {
+		return mSize;
+	}
+
+	public long getTime(int i) {
+		return mTimes[i];
+	}
+
+	public int getAction(int i) {
+		return mActions[i];
+	}
+
+	public float getX(int i) {
+		return mX[i];
+	}
+
+	public float getY(int i) {
+		return mY[i];
+	}
+
+	public static TouchTrace parse(Reader in) throws IOException {
+		TouchTrace trace = new TouchTrace();
+		BufferedReader reader = new BufferedReader(in);
+		String line;
+		int lineNumber = 0;
+		while ((line = reader.readLine()) != null) {
+			lineNumber++;
+			line = line.trim();
+			if ((line.length() == 0) || line.startsWith("#")) {
+				continue;
+			}
+			String[] f = line.split("\\s+");
+			if (f.length != 4) {
+				throw new IOException("line " + lineNumber + ": expected time action x y");
+			}
+			try {
+				trace.add(Long.parseLong(f[0]), parseAction(f[1], lineNumber),
+						Float.parseFloat(f[2]), Float.parseFloat(f[3]));
+			} catch (NumberFormatException e) {
+				throw new IOException("line " + lineNumber + ": " + e.getMessage());
+			}
+		}
+		return trace;
+	}
+
+	private static int parseAction(String action, int lineNumber) throws IOException {
+		if ("down".equals(action)) {
+			return DOWN;
+		} else if ("move".equals(action)) {
+			return MOVE;
+		} else if ("up".equals(action)) {
+			return UP;
+		} else if ("cancel".equals(action)) {
+			return CANCEL;
+		}
+		throw new IOException("line " + lineNumber + ": unknown action " + action);
+	}
+}
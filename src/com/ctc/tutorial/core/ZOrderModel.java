@@ -0,0 +1,31 @@
+/*
+ * Copyright (C) 2011 Scott Lund
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.ctc.tutorial.core;
+
+/**
+ * A BoundsModel (or a LayoutModel, through its adapter) that also
+ * implements this decides which children are drawn over which.
+ * Without it the selected child is drawn on top and the rest in
+ * index order.  Asked again after every selection or size change.
+ */
+public interface ZOrderModel {
+	/**
+	 * @return the z value of a child, higher values are drawn on
+	 *         top.  Children with equal values keep index order.
+	 */
+	public int getZOrder(int pos, int selected);
+}